@@ -0,0 +1,30 @@
+public class AdditiveChecksum implements ChecksumEngine
+{
+    // The original scheme: seqnum + acknum + the value of every payload
+    // char (or byte).  Cheap, but blind to reordered bytes and to errors
+    // that cancel out.
+    public String getName()
+    {
+        return "additive";
+    }
+
+    public int compute(int seq, int ack, byte[] data, int length)
+    {
+        int sum = seq + ack;
+        for (int i = 0; i < length; i++)
+        {
+            sum += data[i] & 0xFF;
+        }
+        return sum;
+    }
+
+    public int compute(int seq, int ack, String payload)
+    {
+        int sum = seq + ack;
+        for (int i = 0; i < payload.length(); i++)
+        {
+            sum += payload.charAt(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.zip.Adler32;
+
+public class Adler32Checksum implements ChecksumEngine
+{
+    private Adler32 adler;
+    private byte[] scratch;
+
+    public Adler32Checksum()
+    {
+        adler = new Adler32();
+        scratch = new byte[8 + NetworkSimulator.MAXDATASIZE];
+    }
+
+    public String getName()
+    {
+        return "adler32";
+    }
+
+    public int compute(int seq, int ack, byte[] data, int length)
+    {
+        adler.reset();
+        ChecksumEngine.putHeader(scratch, seq, ack);
+        adler.update(scratch, 0, 8);
+        adler.update(data, 0, length);
+        return (int)adler.getValue();
+    }
+
+    public int compute(int seq, int ack, String payload)
+    {
+        scratch = ChecksumEngine.scratchFor(scratch, payload);
+        int length = ChecksumEngine.putHeader(scratch, seq, ack, payload);
+        adler.reset();
+        adler.update(scratch, 0, length);
+        return (int)adler.getValue();
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+import java.util.Random;
+
+public class ChecksumBenchmark
+{
+    // Compares the checksum engines on cost per payload byte and on how
+    // many corrupted packets of each kind they fail to notice
+    private static final int TRIALS = 200000;
+
+    // The timed checksums are summed here and printed, so that the JIT
+    // cannot drop them
+    private static int sink;
+
+    public final static void main(String[] argv)
+    {
+        ChecksumEngine[] engines = {new AdditiveChecksum(),
+                                    new InternetChecksum(),
+                                    new Adler32Checksum(),
+                                    new Crc32cChecksum()};
+        int size = 1500;
+
+        if (argv.length > 0)
+        {
+            size = Integer.parseInt(argv[0]);
+        }
+
+        System.out.println("payload: " + size + " bytes, " + TRIALS +
+                           " corrupted packets per column");
+        System.out.println("engine      ns/byte   1-bit  2-bit  " +
+                           "burst<=32  swap 2 bytes  simulator ('?')");
+        for (int i = 0; i < engines.length; i++)
+        {
+            ChecksumEngine engine = engines[i];
+            System.out.println(String.format("%-10s %8.3f  %6d %6d %10d %13d %16d",
+                               engine.getName(), cost(engine, size),
+                               undetected(engine, size, 0),
+                               undetected(engine, size, 1),
+                               undetected(engine, size, 2),
+                               undetected(engine, size, 3),
+                               undetected(engine, size, 4)));
+        }
+        System.out.println("sink: " + sink);
+    }
+
+    private static double cost(ChecksumEngine engine, int size)
+    {
+        byte[] data = new byte[size];
+        new Random(1).nextBytes(data);
+        int iterations = Math.max(1, 200000000 / size);
+
+        // Warm up, then time
+        for (int i = 0; i < iterations / 10; i++)
+        {
+            sink += engine.compute(i, 1, data, size);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            sink += engine.compute(i, 1, data, size);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return (double)elapsed / ((double)iterations * size);
+    }
+
+    // Number of corrupted packets whose checksum still matched
+    private static int undetected(ChecksumEngine engine, int size, int kind)
+    {
+        Random rand = new Random(kind + 1);
+        byte[] data = new byte[size];
+        byte[] bad = new byte[size];
+        int missed = 0;
+
+        for (int t = 0; t < TRIALS; t++)
+        {
+            // The simulator's payloads are runs of one letter
+            Arrays.fill(data, (byte)('a' + rand.nextInt(26)));
+            if (kind != 4)
+            {
+                for (int i = rand.nextInt(size); i < size; i += 1 + rand.nextInt(64))
+                {
+                    data[i] = (byte)rand.nextInt(256);
+                }
+            }
+            System.arraycopy(data, 0, bad, 0, size);
+            int seq = rand.nextInt(1 << 16);
+            int good = engine.compute(seq, 1, data, size);
+
+            if (!corrupt(rand, bad, size, kind))
+            {
+                t--;
+                continue;
+            }
+            if (engine.compute(seq, 1, bad, size) == good)
+            {
+                missed++;
+            }
+        }
+        return missed;
+    }
+
+    // Returns false if the corruption happened to leave the data unchanged
+    private static boolean corrupt(Random rand, byte[] b, int size, int kind)
+    {
+        int bit = rand.nextInt(size * 8);
+        switch (kind)
+        {
+            case 0:
+                flip(b, bit);
+                break;
+
+            case 1:
+                int other = rand.nextInt(size * 8);
+                if (other == bit)
+                {
+                    return false;
+                }
+                flip(b, bit);
+                flip(b, other);
+                break;
+
+            case 2:
+                int length = 2 + rand.nextInt(31);
+                bit = rand.nextInt(size * 8 - length + 1);
+                flip(b, bit);
+                flip(b, bit + length - 1);
+                for (int i = 1; i < length - 1; i++)
+                {
+                    if (rand.nextBoolean())
+                    {
+                        flip(b, bit + i);
+                    }
+                }
+                break;
+
+            case 3:
+                int i = rand.nextInt(size);
+                int j = rand.nextInt(size);
+                if (b[i] == b[j])
+                {
+                    return false;
+                }
+                byte x = b[i];
+                b[i] = b[j];
+                b[j] = x;
+                break;
+
+            default:
+                // What toLayer3 does to a payload
+                if (b[0] == '?')
+                {
+                    return false;
+                }
+                b[0] = (byte)'?';
+        }
+        return true;
+    }
+
+    private static void flip(byte[] b, int bit)
+    {
+        b[bit / 8] ^= (byte)(1 << (bit % 8));
+    }
+}
@@ -0,0 +1,70 @@
+public interface ChecksumEngine
+{
+    // A checksum covers the sequence number, the ack number and the
+    // payload.  Engines other than the additive one see the packet as the
+    // byte string  seqnum (4 bytes, big-endian), acknum (4 bytes,
+    // big-endian), payload, where a String payload contributes the low byte
+    // of each char.  compute(Packet) also covers the advertised window by
+    // xoring it, rotated by 16 bits, into the ack number; a packet that
+    // advertises none sums as it always did.  Engines keep scratch state,
+    // so an engine must not be shared between simulators running on
+    // different threads.
+    public String getName();
+    public int compute(int seq, int ack, byte[] data, int length);
+    public int compute(int seq, int ack, String payload);
+
+    public default int compute(Packet p)
+    {
+        int ack = p.getAcknum() ^ Integer.rotateLeft(p.getWindow(), 16);
+        if (p.getData() != null)
+        {
+            return compute(p.getSeqnum(), ack, p.getData(), p.getLength());
+        }
+
+        return compute(p.getSeqnum(), ack, p.getPayload());
+    }
+
+    // One pass over the packet: true if the stored checksum matches
+    public default boolean verify(Packet p)
+    {
+        return compute(p) == p.getChecksum();
+    }
+
+    // Writes the 8 header bytes to the start of "b"
+    public static void putHeader(byte[] b, int seq, int ack)
+    {
+        b[0] = (byte)(seq >>> 24);
+        b[1] = (byte)(seq >>> 16);
+        b[2] = (byte)(seq >>> 8);
+        b[3] = (byte)seq;
+        b[4] = (byte)(ack >>> 24);
+        b[5] = (byte)(ack >>> 16);
+        b[6] = (byte)(ack >>> 8);
+        b[7] = (byte)ack;
+    }
+
+    // The header followed by the low byte of each payload char; returns the
+    // number of bytes written.  "b" must have room for all of them, see
+    // scratchFor().
+    public static int putHeader(byte[] b, int seq, int ack, String payload)
+    {
+        putHeader(b, seq, ack);
+        for (int i = 0; i < payload.length(); i++)
+        {
+            b[8 + i] = (byte)payload.charAt(i);
+        }
+        return 8 + payload.length();
+    }
+
+    // "scratch" if it can hold the header and payload, else a new buffer
+    // that can; payloads are normally at most MAXDATASIZE chars, but longer
+    // ones must still be covered in full
+    public static byte[] scratchFor(byte[] scratch, String payload)
+    {
+        if (scratch.length < 8 + payload.length())
+        {
+            return new byte[8 + payload.length()];
+        }
+        return scratch;
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.zip.CRC32C;
+
+public class Crc32cChecksum implements ChecksumEngine
+{
+    // CRC-32C (Castagnoli), hardware accelerated on most CPUs.  Detects
+    // every burst error up to 32 bits long.
+    private CRC32C crc;
+    private byte[] scratch;
+
+    public Crc32cChecksum()
+    {
+        crc = new CRC32C();
+        scratch = new byte[8 + NetworkSimulator.MAXDATASIZE];
+    }
+
+    public String getName()
+    {
+        return "crc32c";
+    }
+
+    public int compute(int seq, int ack, byte[] data, int length)
+    {
+        crc.reset();
+        ChecksumEngine.putHeader(scratch, seq, ack);
+        crc.update(scratch, 0, 8);
+        crc.update(data, 0, length);
+        return (int)crc.getValue();
+    }
+
+    public int compute(int seq, int ack, String payload)
+    {
+        scratch = ChecksumEngine.scratchFor(scratch, payload);
+        int length = ChecksumEngine.putHeader(scratch, seq, ack, payload);
+        crc.reset();
+        crc.update(scratch, 0, length);
+        return (int)crc.getValue();
+    }
+}
@@ -3,6 +3,21 @@ public class Event
     private double time;
     private int type;
     private int entity;
+    private TimerHandle timer;
+    
+    // The packet carried by a FROMLAYER3 event is kept as its field values
+    // rather than as a Packet object.  Payload strings are immutable and
+    // can be shared, so snapshotting a packet costs no allocation; the
+    // Packet is built once, when the receiver asks for it.
+    private boolean hasPacket;
+    private int seqnum;
+    private int acknum;
+    private int checksum;
+    private int window;
+    private double timestamp;
+    private String payload;
+    private byte[] data;
+    private int length;
     private Packet packet;
     
     public Event(double t, int ty, int ent)
@@ -10,7 +25,17 @@ public class Event
         time = t;
         type = ty;
         entity = ent;
-        packet = null;
+        timer = null;
+        setPacket(null);
+    }
+    
+    public Event(double t, int ty, int ent, TimerHandle h)
+    {
+        time = t;
+        type = ty;
+        entity = ent;
+        timer = h;
+        setPacket(null);
     }
     
     public Event(double t, int ty, int ent, Packet p)
@@ -18,7 +43,47 @@ public class Event
         time = t;
         type = ty;
         entity = ent;
-        packet = new Packet(p);
+        timer = null;
+        setPacket(p);
+    }
+    
+    public Event(double t, int ty, int ent, int seq, int ack, int check,
+                 int win, double stamp, String newPayload)
+    {
+        time = t;
+        type = ty;
+        entity = ent;
+        timer = null;
+        hasPacket = true;
+        seqnum = seq;
+        acknum = ack;
+        checksum = check;
+        window = win;
+        timestamp = stamp;
+        payload = newPayload;
+        data = null;
+        length = 0;
+        packet = null;
+    }
+    
+    // Byte payload version; "newData" is shared, not copied
+    public Event(double t, int ty, int ent, int seq, int ack, int check,
+                 int win, double stamp, byte[] newData, int len)
+    {
+        time = t;
+        type = ty;
+        entity = ent;
+        timer = null;
+        hasPacket = true;
+        seqnum = seq;
+        acknum = ack;
+        checksum = check;
+        window = win;
+        timestamp = stamp;
+        payload = null;
+        data = newData;
+        length = len;
+        packet = null;
     }
             
     public boolean setTime(double t)
@@ -56,14 +121,24 @@ public class Event
     
     public boolean setPacket(Packet p)
     {
+        packet = null;
         if (p == null)
         {
-            packet = null;
+            hasPacket = false;
+            payload = null;
+            data = null;
         }        
         else
         {
-            packet = new Packet(p.getSeqnum(), p.getAcknum(),
-                                p.getChecksum(), p.getPayload());
+            hasPacket = true;
+            seqnum = p.getSeqnum();
+            acknum = p.getAcknum();
+            checksum = p.getChecksum();
+            window = p.getWindow();
+            timestamp = p.getTimestamp();
+            data = p.getData();
+            length = p.getLength();
+            payload = (data == null) ? p.getPayload() : null;
         }
         
         return true;
@@ -86,13 +161,37 @@ public class Event
     
     public Packet getPacket()
     {
+        if (hasPacket && packet == null)
+        {
+            if (data != null)
+            {
+                packet = new Packet(seqnum, acknum, checksum, data, length);
+            }
+            else
+            {
+                packet = new Packet(seqnum, acknum, checksum, payload);
+            }
+            packet.setWindow(window);
+            packet.setTimestamp(timestamp);
+        }
+        
         return packet;
     }
     
+    public TimerHandle getTimer()
+    {
+        return timer;
+    }
+    
     public String toString()
     {
         return("time: " + time + "  type: " + type + "  entity: " + entity +
-               "packet: " + packet);
+               "packet: " + (hasPacket ? ("seqnum: " + seqnum + "  acknum: " +
+                                          acknum + "  checksum: " + checksum +
+                                          "  payload: " +
+                                          ((data == null) ? payload
+                                                          : length + " bytes"))
+                                       : "null"));
     }
         
 }
@@ -0,0 +1,95 @@
+import java.util.Random;
+
+public class EventListBenchmark
+{
+    // Classic "hold" benchmark: keep N events pending, and repeatedly
+    // remove the earliest and schedule a replacement a little later.  The
+    // replacement mixes the simulator's two common cases: a packet arriving
+    // 1-10 time units after the previous one on the same (non-reordering)
+    // channel, as toLayer3 schedules it, and a fixed retransmission
+    // timeout.
+    private static final double RXMT = 15.0;
+
+    public final static void main(String[] argv)
+    {
+        int[] sizes = {100, 1000, 10000, 100000, 1000000};
+        int ops = 2000000;
+
+        if (argv.length > 0)
+        {
+            ops = Integer.parseInt(argv[0]);
+        }
+
+        System.out.println("pending      vector ns/op    heap ns/op  " +
+                           "calendar ns/op  FIFO merge ns/op  " +
+                           "off-heap ns/op");
+        for (int i = 0; i < sizes.length; i++)
+        {
+            int n = sizes[i];
+            String vector = "-";
+
+            // The vector list is quadratic; only time it where it finishes
+            if (n <= 10000)
+            {
+                vector = String.format("%.1f",
+                             hold(new EventListImpl(), n, ops / 100));
+            }
+
+            // Run each twice and keep the second, warmed-up, number
+            hold(new EventListHeap(), n, ops);
+            double heap = hold(new EventListHeap(), n, ops);
+            hold(new EventListCalendar(), n, ops);
+            double calendar = hold(new EventListCalendar(), n, ops);
+            hold(new EventListFifoMerge(), n, ops);
+            double merge = hold(new EventListFifoMerge(), n, ops);
+            hold(new EventListOffHeap(), n, ops);
+            double offHeap = hold(new EventListOffHeap(), n, ops);
+
+            System.out.println(String.format("%7d  %14s  %12.1f  %14.1f  " +
+                                             "%16.1f  %14.1f", n, vector,
+                                             heap, calendar, merge, offHeap));
+        }
+    }
+
+    private static double hold(EventList list, int n, int ops)
+    {
+        Random rand = new Random(1);
+        double now = 0;
+        double[] lastArrival = new double[2];
+
+        // Spread the initial events as if they had been scheduled over one
+        // timeout interval, rather than all at time 0
+        for (int i = 0; i < n; i++)
+        {
+            list.add(next(rand, rand.nextDouble() * RXMT, i, lastArrival));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++)
+        {
+            Event e = list.removeNext();
+            now = e.getTime();
+            list.add(next(rand, now, e.getEntity(), lastArrival));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return (double)elapsed / ops;
+    }
+
+    private static Event next(Random rand, double now, int i,
+                              double[] lastArrival)
+    {
+        if (rand.nextInt(4) == 0)
+        {
+            return new Event(now + RXMT, NetworkSimulator.TIMERINTERRUPT,
+                             NetworkSimulator.A);
+        }
+
+        int destination = i & 1;
+        double arrival = Math.max(lastArrival[destination], now);
+        arrival = arrival + 1 + rand.nextDouble() * 9;
+        lastArrival[destination] = arrival;
+
+        return new Event(arrival, NetworkSimulator.FROMLAYER3, destination);
+    }
+}
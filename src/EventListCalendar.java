@@ -0,0 +1,413 @@
+import java.util.ArrayList;
+import java.util.Collections;
+
+public class EventListCalendar implements EventList
+{
+    // Calendar queue (R. Brown, CACM 1988).  Events are hashed by time into
+    // "days" of width bucketWidth; each bucket is a list kept sorted by
+    // (time, insertion sequence), so ties come out in the same order as
+    // in EventListImpl.  The number of buckets follows the number of
+    // pending events, and on every resize the bucket width is re-tuned
+    // from the spacing of the events at the front of the queue.  Between
+    // resizes, if the average number of empty days or list links stepped
+    // over per operation gets high, the width is re-tuned from the spacing
+    // of the events actually dequeued since the last check.
+    //
+    // Where it loses: with about a million pending events it is slower
+    // than EventListHeap (see EventListBenchmark).  Each operation then
+    // touches a bucket slot and nodes scattered over a large table, so the
+    // time goes to cache misses rather than steps.  Also, when events span
+    // more than a year of days, as far-ahead packet arrivals do there, the
+    // later ones wrap around into the days just ahead.  A timer due soon
+    // must then be linked in past them.
+    private static final int MINBUCKETS = 2;
+    private static final int SAMPLESIZE = 25;
+    private static final int TUNEOPS = 1024;
+    private static final int MAXSTEPS = 3;
+
+    private static class Node
+    {
+        Event event;
+        double time;//the event's, kept here so ordering need not load it
+        long order;
+        Node next;
+
+        Node(Event e, long o)
+        {
+            event = e;
+            time = e.getTime();
+            order = o;
+        }
+    }
+
+    private Node[] buckets;
+    private Node[] tails;
+    private double bucketWidth;
+    private long currentDay;
+    private double lastTime;
+    private int size;
+    private long nextOrder;
+    private long steps;
+    private int ops;
+    private int pops;
+    private double tuneTime;
+
+    public EventListCalendar()
+    {
+        buckets = new Node[MINBUCKETS];
+        tails = new Node[MINBUCKETS];
+        bucketWidth = 1.0;
+        currentDay = 0;
+        lastTime = 0;
+        size = 0;
+        nextOrder = 0;
+        resetCost();
+    }
+
+    public boolean add(Event e)
+    {
+        insert(new Node(e, nextOrder++));
+        size++;
+        ops++;
+
+        if (size > 2 * buckets.length)
+        {
+            resize(2 * buckets.length);
+        }
+        return true;
+    }
+
+    public Event removeNext()
+    {
+        if (size == 0)
+        {
+            return null;
+        }
+
+        Node n = pop();
+        size--;
+        ops++;
+        pops++;
+
+        if ((size < buckets.length / 2) && (buckets.length > MINBUCKETS))
+        {
+            resize(buckets.length / 2);
+        }
+        else if (ops >= TUNEOPS)
+        {
+            retune();
+        }
+        return n.event;
+    }
+
+    public String toString()
+    {
+        ArrayList<Node> all = nodes();
+        Collections.sort(all, (x, y) -> before(x, y) ? -1 : (before(y, x) ? 1 : 0));
+
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < all.size(); i++)
+        {
+            if (i > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(all.get(i).event);
+        }
+        return sb.append("]").toString();
+    }
+
+    public Event removeTimer(int entity)
+    {
+        // The earliest-added legacy timer for this entity, as in
+        // EventListImpl
+        Node timer = null;
+        for (int i = 0; i < buckets.length; i++)
+        {
+            for (Node n = buckets[i]; n != null; n = n.next)
+            {
+                if ((n.event.getType() == NetworkSimulator.TIMERINTERRUPT) &&
+                    (n.event.getEntity() == entity) &&
+                    (n.event.getTimer() == null) &&
+                    ((timer == null) || (n.order < timer.order)))
+                {
+                    timer = n;
+                }
+            }
+        }
+
+        if (timer == null)
+        {
+            return null;
+        }
+
+        unlink(timer);
+        size--;
+        return timer.event;
+    }
+
+    public double getLastPacketTime(int entityTo)
+    {
+        double time = 0;
+        long latest = -1;
+        for (int i = 0; i < buckets.length; i++)
+        {
+            for (Node n = buckets[i]; n != null; n = n.next)
+            {
+                if ((n.event.getType() == NetworkSimulator.FROMLAYER3) &&
+                    (n.event.getEntity() == entityTo) &&
+                    (n.order > latest))
+                {
+                    latest = n.order;
+                    time = n.event.getTime();
+                }
+            }
+        }
+
+        return time;
+    }
+
+    private long day(double t)
+    {
+        return (long)Math.floor(t / bucketWidth);
+    }
+
+    private int bucket(long d)
+    {
+        return (int)(d % buckets.length);
+    }
+
+    private static boolean before(Node x, Node y)
+    {
+        double tx = x.time;
+        double ty = y.time;
+        return (tx < ty) || ((tx == ty) && (x.order < y.order));
+    }
+
+    private void insert(Node n)
+    {
+        long d = day(n.time);
+
+        // Nothing should be scheduled in the past, but if it is, make sure
+        // the dequeue scan still starts early enough to find it
+        if (d < currentDay)
+        {
+            currentDay = d;
+        }
+
+        int i = bucket(d);
+        if ((buckets[i] == null) || before(n, buckets[i]))
+        {
+            n.next = buckets[i];
+            buckets[i] = n;
+            if (n.next == null)
+            {
+                tails[i] = n;
+            }
+            return;
+        }
+
+        // Most events land after everything already in their bucket
+        // (equal times always do), so try the tail before walking the list
+        if (!before(n, tails[i]))
+        {
+            n.next = null;
+            tails[i].next = n;
+            tails[i] = n;
+            return;
+        }
+
+        Node prev = buckets[i];
+        while ((prev.next != null) && !before(n, prev.next))
+        {
+            prev = prev.next;
+            steps++;
+        }
+        n.next = prev.next;
+        prev.next = n;
+    }
+
+    // Removes and returns the earliest node; the caller keeps size
+    private Node pop()
+    {
+        // Walk one year of days starting at the current one.  The head of
+        // a bucket is due if it falls on (or, after a late insert, before)
+        // the day being looked at.
+        for (int k = 0; k < buckets.length; k++)
+        {
+            int i = bucket(currentDay);
+            Node head = buckets[i];
+            if ((head != null) && (day(head.time) <= currentDay))
+            {
+                return popHead(i);
+            }
+            currentDay++;
+            steps++;
+        }
+
+        // Nothing due within a year: jump straight to the earliest event
+        int best = -1;
+        for (int i = 0; i < buckets.length; i++)
+        {
+            if ((buckets[i] != null) &&
+                ((best == -1) || before(buckets[i], buckets[best])))
+            {
+                best = i;
+            }
+        }
+
+        steps += buckets.length;
+        currentDay = day(buckets[best].time);
+        return popHead(best);
+    }
+
+    private Node popHead(int i)
+    {
+        Node head = buckets[i];
+        buckets[i] = head.next;
+        if (head.next == null)
+        {
+            tails[i] = null;
+        }
+        head.next = null;
+        lastTime = head.time;
+        return head;
+    }
+
+    private void unlink(Node target)
+    {
+        int i = bucket(day(target.time));
+        if (buckets[i] == target)
+        {
+            buckets[i] = target.next;
+            if (target.next == null)
+            {
+                tails[i] = null;
+            }
+            return;
+        }
+
+        Node prev = buckets[i];
+        while (prev.next != target)
+        {
+            prev = prev.next;
+        }
+        prev.next = target.next;
+        if (tails[i] == target)
+        {
+            tails[i] = prev;
+        }
+    }
+
+    private ArrayList<Node> nodes()
+    {
+        ArrayList<Node> all = new ArrayList<Node>(size);
+        for (int i = 0; i < buckets.length; i++)
+        {
+            for (Node n = buckets[i]; n != null; n = n.next)
+            {
+                all.add(n);
+            }
+        }
+        return all;
+    }
+
+    private void resize(int newSize)
+    {
+        rebuild(newSize, sampleWidth());
+    }
+
+    private void rebuild(int newSize, double width)
+    {
+        ArrayList<Node> all = nodes();
+
+        buckets = new Node[newSize];
+        tails = new Node[newSize];
+        bucketWidth = width;
+        currentDay = day(lastTime);
+        for (int i = 0; i < all.size(); i++)
+        {
+            Node n = all.get(i);
+            n.next = null;
+            insert(n);
+        }
+        resetCost();
+    }
+
+    // If the last stretch of operations was expensive, size the days so
+    // that about three of the recently dequeued events fall in each one.
+    // Widths within a factor of two of the current one are not worth the
+    // O(n) rebuild.
+    private void retune()
+    {
+        if ((steps > (long)MAXSTEPS * ops) && (pops > 1) && (lastTime > tuneTime))
+        {
+            double width = 3 * (lastTime - tuneTime) / pops;
+            if ((width > 2 * bucketWidth) || (width < bucketWidth / 2))
+            {
+                rebuild(buckets.length, width);
+                return;
+            }
+        }
+        resetCost();
+    }
+
+    private void resetCost()
+    {
+        steps = 0;
+        ops = 0;
+        pops = 0;
+        tuneTime = lastTime;
+    }
+
+    // Brown's heuristic: take the average spacing of the next few events,
+    // throw away the separations that are much larger than that average
+    // (they are gaps between clusters, not spacing within one), and make
+    // a bucket about three of the remaining separations wide
+    private double sampleWidth()
+    {
+        int n = Math.min(size, SAMPLESIZE);
+        if (n < 2)
+        {
+            return bucketWidth;
+        }
+
+        double savedTime = lastTime;
+        Node[] sample = new Node[n];
+        for (int i = 0; i < n; i++)
+        {
+            sample[i] = pop();
+        }
+
+        double total = 0;
+        for (int i = 1; i < n; i++)
+        {
+            total += sample[i].time - sample[i - 1].time;
+        }
+        double average = total / (n - 1);
+
+        double kept = 0;
+        int count = 0;
+        for (int i = 1; i < n; i++)
+        {
+            double gap = sample[i].time - sample[i - 1].time;
+            if (gap <= 2 * average)
+            {
+                kept += gap;
+                count++;
+            }
+        }
+
+        for (int i = 0; i < n; i++)
+        {
+            insert(sample[i]);
+        }
+        lastTime = savedTime;
+
+        if ((count == 0) || (kept <= 0))
+        {
+            return bucketWidth;
+        }
+        return 3 * kept / count;
+    }
+}
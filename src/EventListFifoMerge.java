@@ -0,0 +1,278 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.PriorityQueue;
+
+public class EventListFifoMerge implements EventList
+{
+    // One append-only FIFO per (event type, entity) stream.  The medium
+    // never reorders, so toLayer3 always schedules a destination's arrivals
+    // in increasing time; layer 5 arrivals are generated one at a time; and
+    // timers started with a fixed interval expire in the order they were
+    // started.  Each stream is therefore already sorted, and the earliest
+    // event is the earliest of the six stream heads.
+    //
+    // An event that would break its stream's order (e.g. a timer started
+    // with a shorter interval than the one before it) goes to a small
+    // overflow heap instead, so any mix of events is still handled
+    // correctly.  Ties are broken by insertion sequence across streams and
+    // overflow, the same as in EventListImpl.
+    private static final int NSTREAMS = 6;
+
+    private static class Node
+    {
+        Event event;
+        long order;
+
+        Node(Event e, long o)
+        {
+            event = e;
+            order = o;
+        }
+    }
+
+    private static class Stream
+    {
+        Node[] nodes = new Node[16];
+        int head = 0;
+        int size = 0;
+
+        void add(Node n)
+        {
+            if (size == nodes.length)
+            {
+                Node[] grown = new Node[size * 2];
+                for (int i = 0; i < size; i++)
+                {
+                    grown[i] = nodes[(head + i) % nodes.length];
+                }
+                nodes = grown;
+                head = 0;
+            }
+            nodes[(head + size++) % nodes.length] = n;
+        }
+
+        Node get(int i)
+        {
+            return nodes[(head + i) % nodes.length];
+        }
+
+        Node peek()
+        {
+            return (size == 0) ? null : nodes[head];
+        }
+
+        Node tail()
+        {
+            return (size == 0) ? null : get(size - 1);
+        }
+
+        Node poll()
+        {
+            Node n = nodes[head];
+            nodes[head] = null;
+            head = (head + 1) % nodes.length;
+            size--;
+            return n;
+        }
+
+        Node removeAt(int i)
+        {
+            Node n = get(i);
+            for (int j = i; j < size - 1; j++)
+            {
+                nodes[(head + j) % nodes.length] = get(j + 1);
+            }
+            nodes[(head + size - 1) % nodes.length] = null;
+            size--;
+            return n;
+        }
+    }
+
+    private Stream[] streams;
+    private PriorityQueue<Node> overflow;
+    private int[] overflowCount;
+    private long nextOrder;
+
+    public EventListFifoMerge()
+    {
+        streams = new Stream[NSTREAMS];
+        for (int i = 0; i < NSTREAMS; i++)
+        {
+            streams[i] = new Stream();
+        }
+        overflow = new PriorityQueue<Node>(11,
+                       (x, y) -> before(x, y) ? -1 : (before(y, x) ? 1 : 0));
+        overflowCount = new int[NSTREAMS + 1];
+        nextOrder = 0;
+    }
+
+    public boolean add(Event e)
+    {
+        Node n = new Node(e, nextOrder++);
+        int s = stream(e);
+
+        if ((s < NSTREAMS) &&
+            ((streams[s].size == 0) ||
+             (streams[s].tail().event.getTime() <= e.getTime())))
+        {
+            streams[s].add(n);
+        }
+        else
+        {
+            overflow.add(n);
+            overflowCount[s]++;
+        }
+        return true;
+    }
+
+    public Event removeNext()
+    {
+        int best = -1;
+        Node first = null;
+        for (int i = 0; i < NSTREAMS; i++)
+        {
+            Node n = streams[i].peek();
+            if ((n != null) && ((first == null) || before(n, first)))
+            {
+                best = i;
+                first = n;
+            }
+        }
+
+        Node o = overflow.peek();
+        if ((o != null) && ((first == null) || before(o, first)))
+        {
+            overflow.poll();
+            overflowCount[stream(o.event)]--;
+            return o.event;
+        }
+
+        if (first == null)
+        {
+            return null;
+        }
+
+        return streams[best].poll().event;
+    }
+
+    public String toString()
+    {
+        ArrayList<Node> all = new ArrayList<Node>(overflow);
+        for (int i = 0; i < NSTREAMS; i++)
+        {
+            for (int j = 0; j < streams[i].size; j++)
+            {
+                all.add(streams[i].get(j));
+            }
+        }
+        Collections.sort(all, (x, y) -> before(x, y) ? -1 : (before(y, x) ? 1 : 0));
+
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < all.size(); i++)
+        {
+            if (i > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(all.get(i).event);
+        }
+        return sb.append("]").toString();
+    }
+
+    public Event removeTimer(int entity)
+    {
+        // The earliest-added legacy timer for this entity, as in
+        // EventListImpl; only its own stream and the overflow can hold it
+        Stream timers = null;
+        int timerIndex = -1;
+        Node timer = null;
+
+        if ((entity == NetworkSimulator.A) || (entity == NetworkSimulator.B))
+        {
+            timers = streams[NetworkSimulator.TIMERINTERRUPT * 2 + entity];
+            for (int i = 0; i < timers.size; i++)
+            {
+                if (timers.get(i).event.getTimer() == null)
+                {
+                    timerIndex = i;
+                    timer = timers.get(i);
+                    break;
+                }
+            }
+        }
+
+        Node spilled = null;
+        for (Node n : overflow)
+        {
+            if ((n.event.getType() == NetworkSimulator.TIMERINTERRUPT) &&
+                (n.event.getEntity() == entity) &&
+                (n.event.getTimer() == null) &&
+                ((spilled == null) || (n.order < spilled.order)))
+            {
+                spilled = n;
+            }
+        }
+
+        if ((spilled != null) && ((timer == null) || (spilled.order < timer.order)))
+        {
+            overflow.remove(spilled);
+            overflowCount[stream(spilled.event)]--;
+            return spilled.event;
+        }
+
+        if (timer == null)
+        {
+            return null;
+        }
+
+        return timers.removeAt(timerIndex).event;
+    }
+
+    public double getLastPacketTime(int entityTo)
+    {
+        if ((entityTo != NetworkSimulator.A) && (entityTo != NetworkSimulator.B))
+        {
+            return 0;
+        }
+
+        int s = NetworkSimulator.FROMLAYER3 * 2 + entityTo;
+        Node last = streams[s].tail();
+
+        // Arrivals only spill over if they were scheduled out of order,
+        // which toLayer3 never does; then the tail is the answer
+        if (overflowCount[s] > 0)
+        {
+            for (Node n : overflow)
+            {
+                if ((stream(n.event) == s) &&
+                    ((last == null) || (n.order > last.order)))
+                {
+                    last = n;
+                }
+            }
+        }
+
+        return (last == null) ? 0 : last.event.getTime();
+    }
+
+    // Stream index of an event, or NSTREAMS if it does not belong to one
+    private static int stream(Event e)
+    {
+        int type = e.getType();
+        int entity = e.getEntity();
+
+        if ((type < 0) || (type > 2) ||
+            ((entity != NetworkSimulator.A) && (entity != NetworkSimulator.B)))
+        {
+            return NSTREAMS;
+        }
+        return type * 2 + entity;
+    }
+
+    private static boolean before(Node x, Node y)
+    {
+        double tx = x.event.getTime();
+        double ty = y.event.getTime();
+        return (tx < ty) || ((tx == ty) && (x.order < y.order));
+    }
+}
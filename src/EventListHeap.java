@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+public class EventListHeap implements EventList
+{
+    // Binary min-heap ordered by (time, insertion sequence).  The sequence
+    // number breaks ties between events with the same time the same way
+    // EventListImpl does (first added is first removed), so a given seed
+    // produces exactly the same run with either list.
+    private Event[] events;
+    private long[] order;
+    private int size;
+    private long nextOrder;
+
+    public EventListHeap()
+    {
+        events = new Event[16];
+        order = new long[16];
+        size = 0;
+        nextOrder = 0;
+    }
+
+    public boolean add(Event e)
+    {
+        if (size == events.length)
+        {
+            events = Arrays.copyOf(events, size * 2);
+            order = Arrays.copyOf(order, size * 2);
+        }
+
+        events[size] = e;
+        order[size] = nextOrder++;
+        siftUp(size++);
+        return true;
+    }
+
+    public Event removeNext()
+    {
+        if (size == 0)
+        {
+            return null;
+        }
+
+        return removeAt(0);
+    }
+
+    public String toString()
+    {
+        Integer[] idx = new Integer[size];
+        for (int i = 0; i < size; i++)
+        {
+            idx[i] = i;
+        }
+        Arrays.sort(idx, (x, y) -> less(x, y) ? -1 : (less(y, x) ? 1 : 0));
+
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++)
+        {
+            if (i > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(events[idx[i]]);
+        }
+        return sb.append("]").toString();
+    }
+
+    public Event removeTimer(int entity)
+    {
+        // Same contract as EventListImpl: the earliest-added timer for
+        // this entity is the one that gets cancelled
+        int timerIndex = -1;
+        for (int i = 0; i < size; i++)
+        {
+            if ((events[i].getType() == NetworkSimulator.TIMERINTERRUPT) &&
+                (events[i].getEntity() == entity) &&
+                (events[i].getTimer() == null) &&
+                ((timerIndex == -1) || (order[i] < order[timerIndex])))
+            {
+                timerIndex = i;
+            }
+        }
+
+        if (timerIndex == -1)
+        {
+            return null;
+        }
+
+        return removeAt(timerIndex);
+    }
+
+    public double getLastPacketTime(int entityTo)
+    {
+        // The last-added arrival for this entity, as EventListImpl returns
+        double time = 0;
+        long latest = -1;
+        for (int i = 0; i < size; i++)
+        {
+            if ((events[i].getType() == NetworkSimulator.FROMLAYER3) &&
+                (events[i].getEntity() == entityTo) &&
+                (order[i] > latest))
+            {
+                latest = order[i];
+                time = events[i].getTime();
+            }
+        }
+
+        return time;
+    }
+
+    private Event removeAt(int i)
+    {
+        Event removed = events[i];
+        size--;
+        if (i != size)
+        {
+            events[i] = events[size];
+            order[i] = order[size];
+            events[size] = null;
+            if (i > 0 && less(i, (i - 1) / 2))
+            {
+                siftUp(i);
+            }
+            else
+            {
+                siftDown(i);
+            }
+        }
+        else
+        {
+            events[size] = null;
+        }
+
+        return removed;
+    }
+
+    private boolean less(int i, int j)
+    {
+        double ti = events[i].getTime();
+        double tj = events[j].getTime();
+        return (ti < tj) || ((ti == tj) && (order[i] < order[j]));
+    }
+
+    private void siftUp(int i)
+    {
+        while (i > 0)
+        {
+            int parent = (i - 1) / 2;
+            if (!less(i, parent))
+            {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i)
+    {
+        while (true)
+        {
+            int child = 2 * i + 1;
+            if (child >= size)
+            {
+                break;
+            }
+            if (child + 1 < size && less(child + 1, child))
+            {
+                child++;
+            }
+            if (!less(child, i))
+            {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j)
+    {
+        Event e = events[i];
+        events[i] = events[j];
+        events[j] = e;
+        long o = order[i];
+        order[i] = order[j];
+        order[j] = o;
+    }
+}
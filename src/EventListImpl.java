@@ -53,7 +53,8 @@ public class EventListImpl implements EventList
         {
             if ((((Event)(data.elementAt(i))).getType() == 
                                            NetworkSimulator.TIMERINTERRUPT) &&
-                (((Event)(data.elementAt(i))).getEntity() == entity))
+                (((Event)(data.elementAt(i))).getEntity() == entity) &&
+                (data.elementAt(i).getTimer() == null))
             {
                 timerIndex = i;
                 break;
@@ -0,0 +1,468 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class EventListOffHeap implements EventList
+{
+    // Pending events are packed into fixed-size records in direct (off-heap)
+    // memory, and ordered by a binary heap of record numbers that is also
+    // kept off-heap; nothing on the Java heap grows with the number of
+    // pending events.  Event and Packet objects are only created again in
+    // removeNext(), when the event is dispatched.  Ordering is (time,
+    // insertion sequence), the same as EventListImpl.
+    //
+    // Keyed timer events hold a TimerHandle and must come back as the very
+    // same object (see NetworkSimulator.runSimulator()).  Their record keeps
+    // the index of the handle in a table with one entry per handle, which
+    // also holds the latest event started on each handle: that one comes
+    // back as itself, and any older one, which the simulator will drop as
+    // stale, as a new Event on the same handle.  So timers cost nothing on
+    // the heap per pending event either.
+    //
+    // Payloads of up to PAYLOADCHARS chars or 2 * PAYLOADCHARS bytes are
+    // packed into the record; a byte payload comes back in a new array, not
+    // in the pooled buffer it was added with.  Only longer payloads are
+    // not packed: such events are parked in an on-heap table and the
+    // record just refers to them, so with payloads that large the heap
+    // does grow with the number of packets in flight.
+    //
+    // Record layout (RECORDSIZE bytes):
+    //    0 time      double
+    //    8 order     long
+    //   16 type      int
+    //   20 entity    int
+    //   24 seqnum    int   (next free record while the record is free)
+    //   28 acknum    int
+    //   32 checksum  int
+    //   36 length    int   (payload chars or bytes, or NOPACKET, TIMER or PARKED)
+    //   40 index     int   (into parked if PARKED, into handles if TIMER,
+    //                       else CHARS or BYTES)
+    //   44 payload   char[PAYLOADCHARS] or byte[2 * PAYLOADCHARS]
+    //   84 window    int
+    //   88 timestamp double
+    private static final int RECORDSIZE = 96;
+    private static final int PAYLOADCHARS = 20;
+    private static final int NOPACKET = -1;
+    private static final int PARKED = -2;
+    private static final int TIMER = -3;
+    private static final int CHARS = 0;
+    private static final int BYTES = 1;
+
+    private static final int TIME = 0;
+    private static final int ORDER = 8;
+    private static final int TYPE = 16;
+    private static final int ENTITY = 20;
+    private static final int SEQNUM = 24;
+    private static final int ACKNUM = 28;
+    private static final int CHECKSUM = 32;
+    private static final int LENGTH = 36;
+    private static final int INDEX = 40;
+    private static final int PAYLOAD = 44;
+    private static final int WINDOW = 84;
+    private static final int TIMESTAMP = 88;
+
+    private ByteBuffer records;
+    private ByteBuffer heap;
+    private int capacity;
+    private int used;
+    private int freeRecord;
+    private int size;
+    private long nextOrder;
+
+    private ArrayList<Event> parked;
+    private ArrayList<Integer> freeParked;
+
+    // One entry per TimerHandle ever seen: the handle, the latest event
+    // started on it and the order of that event's record
+    private ArrayList<TimerHandle> handles;
+    private ArrayList<Event> latestTimers;
+    private long[] latestOrders;
+
+    public EventListOffHeap()
+    {
+        capacity = 0;
+        used = 0;
+        freeRecord = -1;
+        size = 0;
+        nextOrder = 0;
+        parked = new ArrayList<Event>();
+        freeParked = new ArrayList<Integer>();
+        handles = new ArrayList<TimerHandle>();
+        latestTimers = new ArrayList<Event>();
+        latestOrders = new long[4];
+        grow(1024);
+    }
+
+    public boolean add(Event e)
+    {
+        int r = allocate();
+        int base = r * RECORDSIZE;
+        Packet p = e.getPacket();
+        long order = nextOrder++;
+
+        records.putDouble(base + TIME, e.getTime());
+        records.putLong(base + ORDER, order);
+        records.putInt(base + TYPE, e.getType());
+        records.putInt(base + ENTITY, e.getEntity());
+
+        if (e.getTimer() != null)
+        {
+            int h = handleIndex(e.getTimer());
+            latestTimers.set(h, e);
+            latestOrders[h] = order;
+            records.putInt(base + LENGTH, TIMER);
+            records.putInt(base + INDEX, h);
+        }
+        else if (p == null)
+        {
+            records.putInt(base + LENGTH, NOPACKET);
+        }
+        else if ((p.getData() != null) ? (p.getLength() > 2 * PAYLOADCHARS)
+                                        : ((p.getPayload() == null) ||
+                                           (p.getPayload().length() > PAYLOADCHARS)))
+        {
+            records.putInt(base + LENGTH, PARKED);
+            records.putInt(base + INDEX, park(e));
+        }
+        else
+        {
+            records.putInt(base + SEQNUM, p.getSeqnum());
+            records.putInt(base + ACKNUM, p.getAcknum());
+            records.putInt(base + CHECKSUM, p.getChecksum());
+            records.putInt(base + WINDOW, p.getWindow());
+            records.putDouble(base + TIMESTAMP, p.getTimestamp());
+            records.putInt(base + LENGTH, p.getLength());
+            if (p.getData() != null)
+            {
+                records.putInt(base + INDEX, BYTES);
+                byte[] data = p.getData();
+                for (int i = 0; i < p.getLength(); i++)
+                {
+                    records.put(base + PAYLOAD + i, data[i]);
+                }
+            }
+            else
+            {
+                records.putInt(base + INDEX, CHARS);
+                String payload = p.getPayload();
+                for (int i = 0; i < payload.length(); i++)
+                {
+                    records.putChar(base + PAYLOAD + 2 * i, payload.charAt(i));
+                }
+            }
+        }
+
+        setHeap(size, r);
+        siftUp(size++);
+        return true;
+    }
+
+    public Event removeNext()
+    {
+        if (size == 0)
+        {
+            return null;
+        }
+
+        return removeAt(0);
+    }
+
+    public String toString()
+    {
+        ArrayList<Integer> pending = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++)
+        {
+            pending.add(i);
+        }
+        Collections.sort(pending, (x, y) -> less(x, y) ? -1 : (less(y, x) ? 1 : 0));
+
+        ArrayList<Event> all = new ArrayList<Event>(size);
+        for (int i = 0; i < size; i++)
+        {
+            all.add(view(heapAt(pending.get(i))));
+        }
+        return all.toString();
+    }
+
+    public Event removeTimer(int entity)
+    {
+        // The earliest-added legacy timer for this entity, as in
+        // EventListImpl.  A legacy timer is a TIMERINTERRUPT record without
+        // a handle.
+        int timerIndex = -1;
+        long first = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++)
+        {
+            int base = heapAt(i) * RECORDSIZE;
+            if ((records.getInt(base + TYPE) == NetworkSimulator.TIMERINTERRUPT) &&
+                (records.getInt(base + ENTITY) == entity) &&
+                (records.getInt(base + LENGTH) == NOPACKET) &&
+                (records.getLong(base + ORDER) < first))
+            {
+                timerIndex = i;
+                first = records.getLong(base + ORDER);
+            }
+        }
+
+        if (timerIndex == -1)
+        {
+            return null;
+        }
+
+        return removeAt(timerIndex);
+    }
+
+    public double getLastPacketTime(int entityTo)
+    {
+        double time = 0;
+        long latest = -1;
+        for (int i = 0; i < size; i++)
+        {
+            int base = heapAt(i) * RECORDSIZE;
+            if ((records.getInt(base + TYPE) == NetworkSimulator.FROMLAYER3) &&
+                (records.getInt(base + ENTITY) == entityTo) &&
+                (records.getLong(base + ORDER) > latest))
+            {
+                latest = records.getLong(base + ORDER);
+                time = records.getDouble(base + TIME);
+            }
+        }
+
+        return time;
+    }
+
+    // Builds the Event a record stands for, without releasing it
+    private Event view(int r)
+    {
+        int base = r * RECORDSIZE;
+        int length = records.getInt(base + LENGTH);
+
+        if (length == PARKED)
+        {
+            return parked.get(records.getInt(base + INDEX));
+        }
+
+        double time = records.getDouble(base + TIME);
+        int type = records.getInt(base + TYPE);
+        int entity = records.getInt(base + ENTITY);
+
+        if (length == NOPACKET)
+        {
+            return new Event(time, type, entity);
+        }
+
+        if (length == TIMER)
+        {
+            int h = records.getInt(base + INDEX);
+            if (records.getLong(base + ORDER) == latestOrders[h])
+            {
+                return latestTimers.get(h);
+            }
+            return new Event(time, type, entity, handles.get(h));
+        }
+
+        Packet p;
+        if (records.getInt(base + INDEX) == BYTES)
+        {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++)
+            {
+                data[i] = records.get(base + PAYLOAD + i);
+            }
+            p = new Packet(records.getInt(base + SEQNUM),
+                           records.getInt(base + ACKNUM),
+                           records.getInt(base + CHECKSUM), data, length);
+        }
+        else
+        {
+            char[] payload = new char[length];
+            for (int i = 0; i < length; i++)
+            {
+                payload[i] = records.getChar(base + PAYLOAD + 2 * i);
+            }
+            p = new Packet(records.getInt(base + SEQNUM),
+                           records.getInt(base + ACKNUM),
+                           records.getInt(base + CHECKSUM),
+                           new String(payload));
+        }
+        p.setWindow(records.getInt(base + WINDOW));
+        p.setTimestamp(records.getDouble(base + TIMESTAMP));
+        return new Event(time, type, entity, p);
+    }
+
+    private Event removeAt(int i)
+    {
+        int r = heapAt(i);
+        Event removed = view(r);
+        release(r);
+
+        size--;
+        if (i != size)
+        {
+            setHeap(i, heapAt(size));
+            if (i > 0 && less(i, (i - 1) / 2))
+            {
+                siftUp(i);
+            }
+            else
+            {
+                siftDown(i);
+            }
+        }
+
+        return removed;
+    }
+
+    private int allocate()
+    {
+        if (freeRecord != -1)
+        {
+            int r = freeRecord;
+            freeRecord = records.getInt(r * RECORDSIZE + SEQNUM);
+            return r;
+        }
+
+        if (used == capacity)
+        {
+            grow(capacity * 2);
+        }
+        return used++;
+    }
+
+    private void release(int r)
+    {
+        int base = r * RECORDSIZE;
+        if (records.getInt(base + LENGTH) == PARKED)
+        {
+            int index = records.getInt(base + INDEX);
+            parked.set(index, null);
+            freeParked.add(index);
+        }
+
+        records.putInt(base + SEQNUM, freeRecord);
+        freeRecord = r;
+    }
+
+    // The handle's entry in the timer table, added on first use.  There are
+    // only a few handles, so a linear search is enough.
+    private int handleIndex(TimerHandle timer)
+    {
+        for (int h = 0; h < handles.size(); h++)
+        {
+            if (handles.get(h) == timer)
+            {
+                return h;
+            }
+        }
+
+        handles.add(timer);
+        latestTimers.add(null);
+        if (handles.size() > latestOrders.length)
+        {
+            latestOrders = Arrays.copyOf(latestOrders, latestOrders.length * 2);
+        }
+        return handles.size() - 1;
+    }
+
+    private int park(Event e)
+    {
+        if (freeParked.isEmpty())
+        {
+            parked.add(e);
+            return parked.size() - 1;
+        }
+
+        int index = freeParked.remove(freeParked.size() - 1);
+        parked.set(index, e);
+        return index;
+    }
+
+    // Direct buffers are limited to 2GB, i.e. about 24 million pending
+    // events; beyond that allocateDirect() fails
+    private void grow(int newCapacity)
+    {
+        ByteBuffer newRecords = ByteBuffer.allocateDirect(newCapacity * RECORDSIZE)
+                                          .order(ByteOrder.nativeOrder());
+        ByteBuffer newHeap = ByteBuffer.allocateDirect(newCapacity * 4)
+                                       .order(ByteOrder.nativeOrder());
+
+        if (capacity > 0)
+        {
+            ByteBuffer old = records.duplicate();
+            old.position(0).limit(used * RECORDSIZE);
+            newRecords.put(old);
+            old = heap.duplicate();
+            old.position(0).limit(size * 4);
+            newHeap.put(old);
+        }
+
+        records = newRecords;
+        heap = newHeap;
+        capacity = newCapacity;
+    }
+
+    private int heapAt(int i)
+    {
+        return heap.getInt(i * 4);
+    }
+
+    private void setHeap(int i, int r)
+    {
+        heap.putInt(i * 4, r);
+    }
+
+    private boolean less(int i, int j)
+    {
+        int a = heapAt(i) * RECORDSIZE;
+        int b = heapAt(j) * RECORDSIZE;
+        double ta = records.getDouble(a + TIME);
+        double tb = records.getDouble(b + TIME);
+        return (ta < tb) ||
+               ((ta == tb) && (records.getLong(a + ORDER) < records.getLong(b + ORDER)));
+    }
+
+    private void siftUp(int i)
+    {
+        while (i > 0)
+        {
+            int parent = (i - 1) / 2;
+            if (!less(i, parent))
+            {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i)
+    {
+        while (true)
+        {
+            int child = 2 * i + 1;
+            if (child >= size)
+            {
+                break;
+            }
+            if (child + 1 < size && less(child + 1, child))
+            {
+                child++;
+            }
+            if (!less(child, i))
+            {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j)
+    {
+        int r = heapAt(i);
+        setHeap(i, heapAt(j));
+        setHeap(j, r);
+    }
+}
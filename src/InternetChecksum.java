@@ -0,0 +1,55 @@
+public class InternetChecksum implements ChecksumEngine
+{
+    // RFC 1071: ones' complement of the ones' complement sum of the
+    // big-endian 16-bit words (an odd trailing byte is padded with zero)
+    public String getName()
+    {
+        return "internet16";
+    }
+
+    public int compute(int seq, int ack, byte[] data, int length)
+    {
+        long sum = header(seq, ack);
+        int i = 0;
+        for (; i + 1 < length; i += 2)
+        {
+            sum += ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+        }
+        if (i < length)
+        {
+            sum += (data[i] & 0xFF) << 8;
+        }
+        return fold(sum);
+    }
+
+    public int compute(int seq, int ack, String payload)
+    {
+        long sum = header(seq, ack);
+        int length = payload.length();
+        int i = 0;
+        for (; i + 1 < length; i += 2)
+        {
+            sum += ((payload.charAt(i) & 0xFF) << 8) |
+                   (payload.charAt(i + 1) & 0xFF);
+        }
+        if (i < length)
+        {
+            sum += (payload.charAt(i) & 0xFF) << 8;
+        }
+        return fold(sum);
+    }
+
+    private static long header(int seq, int ack)
+    {
+        return (seq >>> 16) + (seq & 0xFFFF) + (ack >>> 16) + (ack & 0xFFFF);
+    }
+
+    private static int fold(long sum)
+    {
+        while ((sum >>> 16) != 0)
+        {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return (int)(~sum & 0xFFFF);
+    }
+}
@@ -1,44 +1,90 @@
+import java.nio.charset.StandardCharsets;
+
 public class Message
 {
     private String data;
     
+    // Byte payload mode: the first "length" bytes of "bytes", taken without
+    // copying.  The buffer normally comes from the simulator's payload pool.
+    private byte[] bytes;
+    private int length;
+    
     public Message(String inputData)
     {
         if (inputData == null)
         {
             data = "";
         }
-        else if (inputData.length() > NetworkSimulator.MAXDATASIZE)
+        else if (inputData.length() > NetworkSimulator.MAXMESSAGESIZE)
         {
             data = "";
         }
         else
         {
-            data = new String(inputData);
+            data = inputData;
+        }
+    }
+           
+    public Message(byte[] inputData, int len)
+    {
+        data = null;
+        if ((inputData == null) || (len < 0) || (len > inputData.length) ||
+            (len > NetworkSimulator.MAXPAYLOADSIZE))
+        {
+            bytes = new byte[0];
+            length = 0;
+        }
+        else
+        {
+            bytes = inputData;
+            length = len;
         }
     }
            
     public boolean setData(String inputData)
     {
+        bytes = null;
+        length = 0;
         if (inputData == null)
         {
             data = "";
             return false;
         }
-        else if (inputData.length() > NetworkSimulator.MAXDATASIZE)
+        else if (inputData.length() > NetworkSimulator.MAXMESSAGESIZE)
         {
             data = "";
             return false;
         }
         else
         {
-            data = new String(inputData);
+            data = inputData;
             return true;
         }
     }
     
     public String getData()
     {
+        if (bytes != null)
+        {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        
         return data;
     }
+    
+    // The byte payload, or null if this message holds a String
+    public byte[] getBytes()
+    {
+        return bytes;
+    }
+    
+    public int getLength()
+    {
+        if (bytes != null)
+        {
+            return length;
+        }
+        
+        return data.length();
+    }
 }
@@ -1,13 +1,25 @@
 import java.util.Vector;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Arrays;
 import java.io.*;
 
 public abstract class NetworkSimulator
 {
-    // This constant controls the maximum size of the buffer in a Message
-    // and in a Packet
+    // This constant controls the maximum size of the buffer in a Packet,
+    // and the default size of a Message
     public static final int MAXDATASIZE = 20;
     
+    // Upper limit for the size of a String Message (see setMessageSize());
+    // a message longer than MAXDATASIZE has to be sent as several packets
+    public static final int MAXMESSAGESIZE = 65536;
+    
+    // Upper limit for the payload size in byte payload mode (see
+    // setPayloadSize())
+    public static final int MAXPAYLOADSIZE = 65536;
+    
     // These constants are possible events
     public static final int TIMERINTERRUPT = 0;
     public static final int FROMLAYER5 = 1;
@@ -23,11 +35,30 @@ public abstract class NetworkSimulator
     private double avgMessageDelay;
     protected int traceLevel;
     private EventList eventList;
+    private HashMap<Long, TimerHandle> timers;
+    private double[] lastArrival;
+    private int[] pendingArrivals;
+    private boolean[] layer5Blocked;
+    private boolean[] arrivalDeferred;
+    private double[] deferredSince;
+    private int[] deferrals;
+    private double[] deferredTime;
+    protected PrintStream out;
+    private String outputPath;
+    private String outputPathA;
     private FileWriter outFile;
+    private FileWriter outFileA;
+    private boolean bidirectional;
+    private int payloadSize;
+    private int messageSize;
+    private PayloadPool pool;
+    private char[] layer5Chars;
+    private ChecksumEngine checksumEngine;
 
     private OSIRandom rand;
 
     private int nSim;
+    private int nSimB;
     private int nToLayer3;
     private int nLost;
     private int nCorrupt;
@@ -39,6 +70,26 @@ public abstract class NetworkSimulator
     protected abstract void aTimerInterrupt();
     protected abstract void aInit();
 
+    // Called when a keyed timer (see startTimer(int, int, double)) expires.
+    // Protocols that use keyed timers override these.
+    protected void aTimerInterrupt(int timerId)
+    {
+        aTimerInterrupt();
+    }
+
+    protected void bTimerInterrupt(int timerId)
+    {
+        out.println("INTERNAL PANIC: Timeout for invalid entity");
+    }
+
+    // Called when layer 5 at B has a message for A (see setBidirectional()).
+    // Protocols that carry data from B override it.
+    protected void bOutput(Message message)
+    {
+        out.println("INTERNAL PANIC: Message from B's layer 5 " +
+                           "is not handled");
+    }
+
     protected abstract void bInput(Packet packet);
     protected abstract void bInit();
     protected abstract void Simulation_done();
@@ -56,29 +107,136 @@ public abstract class NetworkSimulator
         avgMessageDelay = avgDelay;
         traceLevel = trace;
         eventList = new EventListImpl();
+        timers = new HashMap<Long, TimerHandle>();
+        lastArrival = new double[2];
+        pendingArrivals = new int[2];
+        layer5Blocked = new boolean[2];
+        arrivalDeferred = new boolean[2];
+        deferredSince = new double[2];
+        deferrals = new int[2];
+        deferredTime = new double[2];
+        payloadSize = 0;
+        messageSize = MAXDATASIZE;
+        pool = null;
+        layer5Chars = null;
+        checksumEngine = new AdditiveChecksum();
         rand = new OSIRandom(seed);
-	try{
-	    outFile = new FileWriter("OutputFile");
-	}catch (Exception e) {e.printStackTrace();}
+        out = System.out;
+        outputPath = "OutputFile";
+        outputPathA = "OutputFileA";
 
         nSim = 0;
+        nSimB = 0;
         nToLayer3 = 0;
         nLost = 0;
         nCorrupt = 0;
         time = 0;
     }
     
+    // Replaces the pending-event store; only valid before runSimulator()
+    public void setEventList(EventList list)
+    {
+        eventList = list;
+    }
+    
+    // Selects how protocols checksum their packets (see
+    // getChecksumEngine()); the default is the additive checksum
+    public void setChecksumEngine(ChecksumEngine engine)
+    {
+        checksumEngine = engine;
+    }
+    
+    // Switches layer 5 to byte payload mode: every message carries "size"
+    // bytes in a buffer taken from a pool, instead of a MAXDATASIZE String.
+    // Only valid before runSimulator().
+    public boolean setPayloadSize(int size)
+    {
+        if ((size < 1) || (size > MAXPAYLOADSIZE))
+        {
+            return false;
+        }
+        
+        payloadSize = size;
+        pool = new PayloadPool(size);
+        return true;
+    }
+    
+    // Makes layer 5 send String messages of "size" chars instead of
+    // MAXDATASIZE.  A size that does not fit into one packet is refused
+    // unless the protocol fragments (see enableFragmentation()).  Only
+    // valid before runSimulator().
+    public boolean setMessageSize(int size)
+    {
+        if ((size < 1) || (size > MAXMESSAGESIZE) ||
+            ((size > MAXDATASIZE) && !enableFragmentation()))
+        {
+            return false;
+        }
+        
+        messageSize = size;
+        return true;
+    }
+    
+    // Called by setMessageSize() for messages longer than MAXDATASIZE.  A
+    // protocol that can send a message as several packets turns that on
+    // and returns true; by default such messages are refused.
+    protected boolean enableFragmentation()
+    {
+        return false;
+    }
+    
+    // Makes layer 5 at B send messages to A as well, at the same average
+    // rate as A's (through bOutput()); A's layer 5 writes what it receives
+    // to "OutputFileA".  B's messages do not count towards the number of
+    // messages to simulate.  Only valid before runSimulator().
+    public void setBidirectional(boolean on)
+    {
+        bidirectional = on;
+    }
+    
+    // Sends the trace and the statistics to "stream" instead of
+    // System.out, so that simulators can run side by side
+    public void setOutput(PrintStream stream)
+    {
+        out = stream;
+    }
+    
+    // Makes layer 5 at B (and at A, when bidirectional) write what it
+    // receives to "path" ("pathA") instead of "OutputFile"
+    // ("OutputFileA"); null writes nothing.  The files are created by
+    // runSimulator().
+    public void setLayer5Files(String path, String pathA)
+    {
+        outputPath = path;
+        outputPathA = pathA;
+    }
+    
+    protected boolean isBidirectional()
+    {
+        return bidirectional;
+    }
+    
     public void runSimulator()
     {
         Event next;
         
+        outFile = openLayer5(outputPath);
+        if (bidirectional)
+        {
+            outFileA = openLayer5(outputPathA);
+        }
+        
         // Perform any student-required initialization
         aInit();
         bInit();
         
         // Start the whole thing off by scheduling some data arrival
         // from layer 5
-        generateNextArrival();
+        generateNextArrival(A);
+        if (bidirectional)
+        {
+            generateNextArrival(B);
+        }
         
         // Begin the main loop
         while (true)
@@ -90,28 +248,59 @@ public abstract class NetworkSimulator
                 break;
             }
             
+            // A keyed timer that was stopped or restarted leaves its old
+            // event behind; it is simply dropped here
+            if (next.getTimer() != null)
+            {
+                if (!next.getTimer().isPending(next))
+                {
+                    continue;
+                }
+                next.getTimer().setPending(null);
+            }
+            
             if (traceLevel >= 2)
             {
-                System.out.println();
-                System.out.print("EVENT time: " + next.getTime());
-                System.out.print("  type: " + next.getType());
-                System.out.println("  entity: " + next.getEntity());
+                out.println();
+                out.print("EVENT time: " + next.getTime());
+                out.print("  type: " + next.getType());
+                out.println("  entity: " + next.getEntity());
             }
             
             // Advance the simulator's time
             time = next.getTime();
             
+            // Once the last scheduled arrival for an entity has been
+            // delivered, its channel is idle again
+            if (next.getType() == FROMLAYER3 &&
+                (next.getEntity() == A || next.getEntity() == B) &&
+                --pendingArrivals[next.getEntity()] == 0)
+            {
+                lastArrival[next.getEntity()] = 0;
+            }
+            
             // Perform the appropriate action based on the event 
             switch (next.getType())
             {
                 case TIMERINTERRUPT:
-                    if (next.getEntity() == A)
+                    if (next.getTimer() != null)
+                    {
+                        if (next.getEntity() == A)
+                        {
+                            aTimerInterrupt(next.getTimer().getTimerId());
+                        }
+                        else
+                        {
+                            bTimerInterrupt(next.getTimer().getTimerId());
+                        }
+                    }
+                    else if (next.getEntity() == A)
                     {
                         aTimerInterrupt();
                     }
                     else
                     {
-                        System.out.println("INTERNAL PANIC: Timeout for " +
+                        out.println("INTERNAL PANIC: Timeout for " +
                                            "invalid entity");
                     }
                     break;
@@ -127,26 +316,43 @@ public abstract class NetworkSimulator
                     }
                     else
                     {
-                        System.out.println("INTERNAL PANIC: Packet has " +
+                        out.println("INTERNAL PANIC: Packet has " +
                                            "arrived for unknown entity");
                     }
                     
+                    // The in-flight copy of a byte payload goes back to the
+                    // pool once the receiver is done with it
+                    releasePayload(next.getPacket().getData());
                     break;
                     
                 case FROMLAYER5:
                     
+                    // A blocked sender does not take the message yet, and
+                    // makes no new ones until it is unblocked (see
+                    // setLayer5Blocked())
+                    if (layer5Blocked[next.getEntity()])
+                    {
+                        arrivalDeferred[next.getEntity()] = true;
+                        deferredSince[next.getEntity()] = time;
+                        deferrals[next.getEntity()]++;
+                        break;
+                    }
+                    
                     // If a message has arrived from layer 5, we need to
                     // schedule the arrival of the next message
-                    generateNextArrival();
+                    generateNextArrival(next.getEntity());
                     
-                    char[] nextMessage = new char[MAXDATASIZE];
+                    // B's messages are upper case, and do not count
+                    // towards the end of the run
+                    if (next.getEntity() == B)
+                    {
+                        bOutput(newMessage((char)((nSimB % 26) + 65)));
+                        nSimB++;
+                        break;
+                    }
                     
                     // Now, let's generate the contents of this message
                     char j = (char)((nSim % 26) + 97);
-                    for (int i = 0; i < MAXDATASIZE; i++)
-                    {
-                        nextMessage[i] = j;
-                    }
                     
                     // Increment the message counter
                     nSim++;
@@ -156,42 +362,82 @@ public abstract class NetworkSimulator
 			break;
                     
                     // Let the student handle the new message
-                    aOutput(new Message(new String(nextMessage)));
+                    aOutput(newMessage(j));
                     break;
                     
                 default:
-                    System.out.println("INTERNAL PANIC: Unknown event type");
+                    out.println("INTERNAL PANIC: Unknown event type");
             }
 	    if (nSim == maxMessages+1)
 		break;
         }
-        System.out.println("Simulator terminated at time "+getTime());
+        out.println("Simulator terminated at time "+getTime());
         Simulation_done();
 	try{
-	    outFile.flush();
-	    outFile.close();
+	    if (outFile != null)
+	    {
+		outFile.flush();
+		outFile.close();
+	    }
+	    if (outFileA != null)
+	    {
+		outFileA.flush();
+		outFileA.close();
+	    }
 	}catch (Exception e) {e.printStackTrace();}
     }
     
+    private FileWriter openLayer5(String path)
+    {
+        if (path == null)
+        {
+            return null;
+        }
+	try{
+	    return new FileWriter(path);
+	}catch (Exception e) {e.printStackTrace();}
+        return null;
+    }
+    
+    // A message of layer 5's, every char (or byte) of it "j"
+    private Message newMessage(char j)
+    {
+        if (pool != null)
+        {
+            byte[] nextData = pool.acquire();
+            Arrays.fill(nextData, 0, payloadSize, (byte)j);
+            return new Message(nextData, payloadSize);
+        }
+        
+        char[] nextMessage = new char[messageSize];
+        for (int i = 0; i < messageSize; i++)
+        {
+            nextMessage[i] = j;
+        }
+        return new Message(new String(nextMessage));
+    }
+    
     /* Generate the next arrival and add it to the event list */
-    private void generateNextArrival()
+    private void generateNextArrival(int entity)
     {
         if (traceLevel > 2)
         {
-            System.out.println("generateNextArrival(): called");
+            out.println("generateNextArrival(): called");
         }
         
         // arrival time 'x' is uniform on [0, 2*avgMessageDelay]
         // having mean of avgMessageDelay.  Should this be made
         // into a Gaussian distribution? 
-        double x = 2 * avgMessageDelay * rand.nextDouble(0);
-        Event next = new Event(time + x, FROMLAYER5, A);
+        // B's arrivals come from a stream of their own, so that A's are the
+        // same with or without them
+        double x = 2 * avgMessageDelay * rand.nextDouble((entity == A) ? 0 : 5);
+        Event next = new Event(time + x, FROMLAYER5, entity);
                 
         eventList.add(next);
         if (traceLevel > 2)
         {
-            System.out.println("generateNextArrival(): time is " + time);
-            System.out.println("generateNextArrival(): future time for " +
+            out.println("generateNextArrival(): time is " + time);
+            out.println("generateNextArrival(): future time for " +
                                "event " + next.getType() + " at entity " +
                                next.getEntity() + " will be " +
                                next.getTime());
@@ -203,7 +449,7 @@ public abstract class NetworkSimulator
     {
         if (traceLevel > 2)
         {
-            System.out.println("stopTimer: stopping timer at " + time);
+            out.println("stopTimer: stopping timer at " + time);
         }
 
         Event timer = eventList.removeTimer(entity);
@@ -212,7 +458,7 @@ public abstract class NetworkSimulator
         // timer
         if (timer == null)
         {
-            System.out.println("stopTimer: Warning: Unable to cancel your " +
+            out.println("stopTimer: Warning: Unable to cancel your " +
                                "timer");
         }        
     }
@@ -221,14 +467,14 @@ public abstract class NetworkSimulator
     {
         if (traceLevel > 2)
         {
-            System.out.println("startTimer: starting timer at " + time);
+            out.println("startTimer: starting timer at " + time);
         }
 
         Event t = eventList.removeTimer(entity);        
 
         if (t != null)
         {
-            System.out.println("startTimer: Warning: Attempting to start a " +
+            out.println("startTimer: Warning: Attempting to start a " +
                                "timer that is already running");
             eventList.add(t);
             return;
@@ -240,17 +486,89 @@ public abstract class NetworkSimulator
         }
     }    
     
+    // Returns the handle for timer "timerId" at "entity", creating it
+    // (stopped) the first time it is asked for
+    protected TimerHandle getTimer(int entity, int timerId)
+    {
+        Long key = Long.valueOf(((long)entity << 32) | (timerId & 0xFFFFFFFFL));
+        TimerHandle timer = timers.get(key);
+        
+        if (timer == null)
+        {
+            timer = new TimerHandle(entity, timerId);
+            timers.put(key, timer);
+        }
+        
+        return timer;
+    }
+    
+    protected TimerHandle startTimer(int entity, int timerId, double increment)
+    {
+        TimerHandle timer = getTimer(entity, timerId);
+        restartTimer(timer, increment);
+        return timer;
+    }
+    
+    // Starts the timer, or moves its expiry if it is already running.
+    // The superseded event stays in the event list and is discarded when
+    // it comes up, so this never has to search the list.
+    protected void restartTimer(TimerHandle timer, double increment)
+    {
+        if (traceLevel > 2)
+        {
+            out.println("restartTimer: starting timer " +
+                               timer.getTimerId() + " at " + time);
+        }
+        
+        Event t = new Event(time + increment, TIMERINTERRUPT,
+                            timer.getEntity(), timer);
+        timer.setPending(t);
+        eventList.add(t);
+    }
+    
+    // Returns false if the timer was not running
+    protected boolean stopTimer(TimerHandle timer)
+    {
+        if (traceLevel > 2)
+        {
+            out.println("stopTimer: stopping timer " +
+                               timer.getTimerId() + " at " + time);
+        }
+        
+        if (!timer.isRunning())
+        {
+            return false;
+        }
+        
+        timer.setPending(null);
+        return true;
+    }
+    
     protected void toLayer3(int callingEntity, Packet p)
     {
         nToLayer3++;
         
         int destination;
         double arrivalTime;
-        Packet packet = new Packet(p);
+        
+        // The packet travels as a snapshot of its fields (see Event), so
+        // the sender may reuse or change "p" afterwards; only corruption
+        // below ever modifies the copy in flight
+        int seqnum = p.getSeqnum();
+        int acknum = p.getAcknum();
+        int window = p.getWindow();
+        String payload = null;
+        byte[] data = p.getData();
+        int length = p.getLength();
+        
+        if (data == null)
+        {
+            payload = p.getPayload();
+        }
     
         if (traceLevel > 2)
         {
-            System.out.println("toLayer3: " + packet);
+            out.println("toLayer3: " + p);
         }
 
         // Set our destination
@@ -264,7 +582,7 @@ public abstract class NetworkSimulator
         }
         else
         {
-            System.out.println("toLayer3: Warning: invalid packet sender");
+            out.println("toLayer3: Warning: invalid packet sender");
             return;
         }
 
@@ -275,7 +593,7 @@ public abstract class NetworkSimulator
             
             if (traceLevel > 0)
             {
-                System.out.println("toLayer3: packet being lost");
+                out.println("toLayer3: packet being lost");
             }
             
             return;
@@ -283,8 +601,11 @@ public abstract class NetworkSimulator
         
         // Decide when the packet will arrive.  Since the medium cannot
         // reorder, the packet will arrive 1 to 10 time units after the
-        // last packet sent by this sender
-        arrivalTime = eventList.getLastPacketTime(destination);
+        // last packet sent by this sender.  Arrivals for a destination are
+        // scheduled in increasing time order, so the most recently
+        // scheduled one that is still pending is the latest; this matches
+        // eventList.getLastPacketTime(destination) without the scan.
+        arrivalTime = lastArrival[destination];
         
         if (arrivalTime <= 0.0)
         {
@@ -292,6 +613,23 @@ public abstract class NetworkSimulator
         }
         
         arrivalTime = arrivalTime + 1 + (rand.nextDouble(2) * 9);
+        
+        // A byte payload is the one thing that must be copied, since the
+        // sender keeps its buffer for retransmission
+        if (data != null)
+        {
+            byte[] copy;
+            if ((pool != null) && (length <= payloadSize))
+            {
+                copy = pool.acquire();
+            }
+            else
+            {
+                copy = new byte[Math.max(length, 1)];
+            }
+            System.arraycopy(data, 0, copy, 0, length);
+            data = copy;
+        }
 
         // Simulate corruption
         if (rand.nextDouble(3) < corruptProb)
@@ -300,29 +638,36 @@ public abstract class NetworkSimulator
             
             if (traceLevel > 0)
             {
-                System.out.println("toLayer3: packet being corrupted");
+                out.println("toLayer3: packet being corrupted");
             }
             
             double x = rand.nextDouble(4);
-            if (x < 0.75)
+            if (x < 0.75 && data != null)
+            {
+                data[0] = (byte)'?';
+                length = Math.max(length, 1);
+            }
+            else if (x < 0.75)
             {
-                String payload = packet.getPayload();
-                
 		if (payload.length()>0)
                 
 		    payload = "?" + payload.substring(1);
 		
 		else payload = "?";
-                
-                packet.setPayload(payload);
             }
             else if (x < 0.875)
             {
-                packet.setSeqnum(999999);
+                seqnum = 999999;
+            }
+            else if (x >= 0.9375 && window != 0)
+            {
+                // A packet that advertises a window may have that field
+                // hit instead; the checksum covers it (see ChecksumEngine)
+                window = 999999;
             }
             else
             {
-                packet.setAcknum(999999);
+                acknum = 999999;
             }
         }
         
@@ -330,28 +675,149 @@ public abstract class NetworkSimulator
         // Finally, create and schedule this event
         if (traceLevel > 2)
         {
-            System.out.println("toLayer3: scheduling arrival on other side");
+            out.println("toLayer3: scheduling arrival on other side");
+        }
+        Event arrival;
+        if (data != null)
+        {
+            arrival = new Event(arrivalTime, FROMLAYER3, destination,
+                                seqnum, acknum, p.getChecksum(), window,
+                                p.getTimestamp(), data, length);
+        }
+        else
+        {
+            arrival = new Event(arrivalTime, FROMLAYER3, destination,
+                                seqnum, acknum, p.getChecksum(), window,
+                                p.getTimestamp(), payload);
         }
-        Event arrival = new Event(arrivalTime, FROMLAYER3, destination, packet);
         eventList.add(arrival);
+        lastArrival[destination] = arrivalTime;
+        pendingArrivals[destination]++;
     }
     
     protected void toLayer5(String dataSent)
     {
+        toLayer5(B, dataSent);
+    }
+    
+    // Passes "dataSent" up to layer 5 at "entity" (A only receives data
+    // when bidirectional)
+    protected void toLayer5(int entity, String dataSent)
+    {
+        FileWriter file = (entity == A) ? outFileA : outFile;
+        if (file == null)
+        {
+            return;
+        }
 	try{
-	    outFile.write(dataSent,0,MAXDATASIZE);
-	    outFile.write('\n');
+	    file.write(dataSent,0,dataSent.length());
+	    file.write('\n');
 	}catch (Exception e) {e.printStackTrace();}
     }
     
+    protected void toLayer5(byte[] dataSent, int length)
+    {
+        toLayer5(B, dataSent, length);
+    }
+    
+    protected void toLayer5(int entity, byte[] dataSent, int length)
+    {
+        if ((layer5Chars == null) || (layer5Chars.length < length))
+        {
+            layer5Chars = new char[length];
+        }
+        for (int i = 0; i < length; i++)
+        {
+            layer5Chars[i] = (char)(dataSent[i] & 0xFF);
+        }
+        
+        FileWriter file = (entity == A) ? outFileA : outFile;
+        if (file == null)
+        {
+            return;
+        }
+	try{
+	    file.write(layer5Chars,0,length);
+	    file.write('\n');
+	}catch (Exception e) {e.printStackTrace();}
+    }
+    
+    // Gives a byte payload buffer back to the pool when the protocol no
+    // longer needs it (e.g. once a packet has been acknowledged).  Buffers
+    // that did not come from the pool are ignored.
+    protected void releasePayload(byte[] data)
+    {
+        if (pool != null)
+        {
+            pool.release(data);
+        }
+    }
+    
+    protected ChecksumEngine getChecksumEngine()
+    {
+        return checksumEngine;
+    }
+    
     protected double getTime()
     {
         return time;
     }
     
+    // Blocks layer 5 at "entity", as a send call blocks on a full socket
+    // buffer, or unblocks it.  A message that comes up while its sender is
+    // blocked is deferred, and no further ones are made; unblocking hands
+    // the deferred message over at once, after which arrivals go on as
+    // before.
+    protected void setLayer5Blocked(int entity, boolean blocked)
+    {
+        layer5Blocked[entity] = blocked;
+        if (!blocked && arrivalDeferred[entity])
+        {
+            arrivalDeferred[entity] = false;
+            deferredTime[entity] += time - deferredSince[entity];
+            eventList.add(new Event(time, FROMLAYER5, entity));
+        }
+    }
+    
+    protected boolean isLayer5Blocked(int entity)
+    {
+        return layer5Blocked[entity];
+    }
+    
+    // Number of messages that were deferred at "entity", and the time they
+    // spent waiting in all (a message still waiting counts up to now)
+    protected int getDeferrals(int entity)
+    {
+        return deferrals[entity];
+    }
+    
+    protected double getDeferredTime(int entity)
+    {
+        return deferredTime[entity] +
+               (arrivalDeferred[entity] ? time - deferredSince[entity] : 0);
+    }
+    
+    // The statistics of a finished run by name, in a fixed order, so that
+    // runs can be compared without parsing what Simulation_done() prints
+    // (see Sweep).  These are the simulator's own counts; a protocol
+    // overrides this to add its own to them.
+    public Map<String, Number> getStatistics()
+    {
+        Map<String, Number> stats = new LinkedHashMap<String, Number>();
+        stats.put("time", time);
+        stats.put("packetsToLayer3", nToLayer3);
+        stats.put("packetsLost", nLost);
+        stats.put("packetsCorrupted", nCorrupt);
+        stats.put("deferralsA", getDeferrals(A));
+        stats.put("deferredTimeA", getDeferredTime(A));
+        stats.put("deferralsB", getDeferrals(B));
+        stats.put("deferredTimeB", getDeferredTime(B));
+        return stats;
+    }
+    
     protected void printEventList()
     {
-        System.out.println(eventList.toString());
+        out.println(eventList.toString());
     }
     
 }
@@ -1,10 +1,10 @@
 public class OSIRandom
 {
-    private long seed[] = new long[5];
+    private long seed[] = new long[6];
 
     public OSIRandom(int s)
     {
-	for (int i=0;i<5;i++)
+	for (int i=0;i<6;i++)
 	  seed[i] = (s+i) & 0xFFFFFFFFL;
     }
 
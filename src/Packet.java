@@ -1,3 +1,6 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 public class Packet
 {
     private int seqnum;
@@ -5,12 +8,36 @@ public class Packet
     private int checksum;
     private String payload;
     
+    // Byte payload mode: the first "length" bytes of "data".  The packet
+    // takes the array as it is given, without copying; payload is unused.
+    private byte[] data;
+    private int length;
+    
+    // The receive window the sender advertises, in packets; 0 unless set.
+    // The checksum covers it like the other header fields.
+    private int window;
+    
+    // The sender's clock when it transmitted this packet, or, on a packet
+    // that acknowledges, the stamp it echoes back; 0 unless set.  Like the
+    // TCP timestamp option it is left out of the checksum.
+    private double timestamp;
+    
     public Packet(Packet p)
     {
         seqnum = p.getSeqnum();
         acknum = p.getAcknum();
         checksum = p.getChecksum();
-        payload = new String(p.getPayload());
+        window = p.getWindow();
+        timestamp = p.getTimestamp();
+        if (p.getData() != null)
+        {
+            data = Arrays.copyOf(p.getData(), p.getLength());
+            length = p.getLength();
+        }
+        else
+        {
+            payload = p.getPayload();
+        }
     }
     
     public Packet(int seq, int ack, int check, String newPayload)
@@ -28,10 +55,18 @@ public class Packet
         }
         else
         {
-            payload = new String(newPayload);
+            payload = newPayload;
         }
     }
     
+    public Packet(int seq, int ack, int check, byte[] newData, int len)
+    {
+        seqnum = seq;
+        acknum = ack;
+        checksum = check;
+        setData(newData, len);
+    }
+    
     public Packet(int seq, int ack, int check)
     {
         seqnum = seq;
@@ -59,8 +94,22 @@ public class Packet
         return true;
     }
     
+    public boolean setWindow(int n)
+    {
+        window = n;
+        return true;
+    }
+    
+    public boolean setTimestamp(double t)
+    {
+        timestamp = t;
+        return true;
+    }
+    
     public boolean setPayload(String newPayload)
     {
+        data = null;
+        length = 0;
         if (newPayload == null)
         {
             payload = "";
@@ -73,7 +122,30 @@ public class Packet
         }
         else
         {
-            payload = new String(newPayload);
+            payload = newPayload;
+            return true;
+        }
+    }
+    
+    public boolean setData(byte[] newData, int len)
+    {
+        payload = null;
+        if ((newData == null) || (len < 0) || (len > newData.length))
+        {
+            data = new byte[0];
+            length = 0;
+            return false;
+        }
+        else if (len > NetworkSimulator.MAXPAYLOADSIZE)
+        {
+            data = new byte[0];
+            length = 0;
+            return false;
+        }
+        else
+        {
+            data = newData;
+            length = len;
             return true;
         }
     }
@@ -93,15 +165,55 @@ public class Packet
         return checksum;
     }
     
+    public int getWindow()
+    {
+        return window;
+    }
+    
+    public double getTimestamp()
+    {
+        return timestamp;
+    }
+    
+    // A byte payload is decoded one byte per char; this allocates, so
+    // byte mode code should use getData() and getLength() instead
     public String getPayload()
     {
+        if (data != null)
+        {
+            return new String(data, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        
         return payload;
     }
     
+    // The byte payload, or null if this packet carries a String payload
+    public byte[] getData()
+    {
+        return data;
+    }
+    
+    public int getLength()
+    {
+        if (data != null)
+        {
+            return length;
+        }
+        
+        return (payload == null) ? 0 : payload.length();
+    }
+    
     public String toString()
     {
-        return("seqnum: " + seqnum + "  acknum: " + acknum + "  checksum: " +
-               checksum + "  payload: " + payload);
+        String header = "seqnum: " + seqnum + "  acknum: " + acknum +
+                        "  checksum: " + checksum +
+                        ((window != 0) ? "  window: " + window : "");
+        if (data != null)
+        {
+            return(header + "  payload: " + length + " bytes");
+        }
+        
+        return(header + "  payload: " + payload);
     }
     
 }
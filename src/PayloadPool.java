@@ -0,0 +1,51 @@
+import java.util.ArrayDeque;
+
+public class PayloadPool
+{
+    // Free list of equally sized payload buffers.  Buffers that are never
+    // given back are simply left to the garbage collector, so releasing is
+    // an optimisation, not an obligation.
+    private static final int MAXPOOLED = 4096;
+
+    private int bufferSize;
+    private ArrayDeque<byte[]> free;
+    private int allocated;
+
+    public PayloadPool(int size)
+    {
+        bufferSize = size;
+        free = new ArrayDeque<byte[]>();
+        allocated = 0;
+    }
+
+    public byte[] acquire()
+    {
+        byte[] buffer = free.poll();
+        if (buffer == null)
+        {
+            allocated++;
+            buffer = new byte[bufferSize];
+        }
+        return buffer;
+    }
+
+    public void release(byte[] buffer)
+    {
+        if ((buffer != null) && (buffer.length == bufferSize) &&
+            (free.size() < MAXPOOLED))
+        {
+            free.push(buffer);
+        }
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    // Number of buffers this pool has ever had to allocate
+    public int getAllocated()
+    {
+        return allocated;
+    }
+}
@@ -6,268 +6,58 @@ public class Project
     {
         StudentNetworkSimulator simulator;
         
-        int nsim = -1;
-        double loss = -1;
-        double corrupt = -1;
-        double delay = -1;
-        int trace = -1;
-        int seed = -1;
-	int windowsize = -1;
-	double timeout = -1;
+        // Flags instead of prompts (see Sweep)
+        if (argv.length > 0)
+        {
+            Sweep.main(argv);
+            return;
+        }
+        
+        // One prompt per setting, in SimulatorSettings order; an empty
+        // line (or the end of the input) takes the default, and a value
+        // out of range is asked for again
+        SimulatorSettings settings = new SimulatorSettings();
         String buffer = "";
-        File outputfile = new File("OutputFile");
         BufferedReader stdIn = new BufferedReader(
                                    new InputStreamReader(System.in));
                                    
         System.out.println("-- * Network Simulator v1.0 * --");
         
-        while (nsim < 1)
-        {
-            System.out.print("Enter number of messages to simulate (> 0): " +
-                             "[10] ");
-            try
-            {
-                buffer = stdIn.readLine();
-            }
-            catch (IOException ioe)
-            {
-                System.out.println("IOError reading your input!");
-                System.exit(1);
-            }
-            
-            if (buffer.equals(""))
-            {
-                nsim = 10;
-            }
-            else
-            {            
-                try
-                {
-                    nsim = Integer.parseInt(buffer);
-                }
-                catch (NumberFormatException nfe)
-                {
-                    nsim = -1;
-                }
-            }
-        }
-        
-        while (loss < 0)
-        {
-            System.out.print("Enter packet loss probability (0.0 for no " +
-                             "loss): [0.0] ");
-            try
-            {
-                buffer = stdIn.readLine();
-            }
-            catch (IOException ioe)
-            {
-                System.out.println("IOError reading your input!");
-                System.exit(1);
-            }
-            
-            if (buffer.equals(""))
-            {
-                loss = 0;
-            }
-            else
-            {            
-                try
-                {
-                    loss = (Double.valueOf(buffer)).doubleValue();
-                }
-                catch (NumberFormatException nfe)
-                {
-                    loss = -1;
-                }
-            }
-        }            
-
-        while (corrupt < 0)
-        {
-            System.out.print("Enter packet corruption probability (0.0 " +
-                             "for no corruption): [0.0] ");
-            try
-            {
-                buffer = stdIn.readLine();
-            }
-            catch (IOException ioe)
-            {
-                System.out.println("IOError reading your input!");
-                System.exit(1);
-            }
-            
-            if (buffer.equals(""))
-            {
-                corrupt = 0;
-            }
-            else
-            {            
-                try
-                {
-                    corrupt = (Double.valueOf(buffer)).doubleValue();
-                }
-                catch (NumberFormatException nfe)
-                {
-                    corrupt = -1;
-                }
-            }
-        }            
-
-        while (delay <= 0)
-        {
-            System.out.print("Enter average time between messages from " +
-                             "sender's layer 5 (> 0.0): [1000] ");
-            try
-            {
-                buffer = stdIn.readLine();
-            }
-            catch (IOException ioe)
-            {
-                System.out.println("IOError reading your input!");
-                System.exit(1);
-            }
-            
-            if (buffer.equals(""))
-            {
-                delay = 1000;
-            }
-            else
-            {            
-                try
-                {
-                    delay = (Double.valueOf(buffer)).doubleValue();
-                }
-                catch (NumberFormatException nfe)
-                {
-                    delay = -1;
-                }
-            }
-        }            
-
-         while (windowsize < 1)
+        String[] names = SimulatorSettings.getNames();
+        for (int i = 0; i < names.length; i++)
         {
-            System.out.print("Enter window size (> 0): [8] ");
-            try
-            {
-                buffer = stdIn.readLine();
-            }
-            catch (IOException ioe)
-            {
-                System.out.println("IOError reading your input!");
-                System.exit(1);
-            }
-            
-            if (buffer.equals(""))
+            boolean valid = false;
+            while (!valid)
             {
-                windowsize = 8;
-            }
-            else
-            {            
+                System.out.print(SimulatorSettings.prompt(names[i]));
                 try
                 {
-                    windowsize = Integer.parseInt(buffer);
+                    buffer = stdIn.readLine();
                 }
-                catch (NumberFormatException nfe)
+                catch (IOException ioe)
                 {
-                    windowsize = -1;
+                    System.out.println("IOError reading your input!");
+                    System.exit(1);
                 }
-            }
-        }
-
-	while (timeout <= 0)
-        {
-            System.out.print("Enter retransmission timeout (>0.0) [15.0] ");
-            try
-            {
-                buffer = stdIn.readLine();
-            }
-            catch (IOException ioe)
-            {
-                System.out.println("IOError reading your input!");
-                System.exit(1);
-            }
-            
-            if (buffer.equals(""))
-            {
-                timeout = 15.0;
-            }
-            else
-            {            
-                try
+                
+                if (buffer == null || buffer.equals(""))
                 {
-                    timeout = (Double.valueOf(buffer)).doubleValue();
+                    break;
                 }
-                catch (NumberFormatException nfe)
-                {
-                    timeout = -1;
-                }
-            }
-        }            
-
-        while (trace < 0)
-        {
-            System.out.print("Enter trace level (>= 0): [0] ");
-            try
-            {
-                buffer = stdIn.readLine();
-            }
-            catch (IOException ioe)
-            {
-                System.out.println("IOError reading your input!");
-                System.exit(1);
-            }
-            
-            if (buffer.equals(""))
-            {
-                trace = 0;
-            }
-            else
-            {            
-                try
-                {
-                    trace = Integer.parseInt(buffer);
-                }
-                catch (NumberFormatException nfe)
-                {
-                    trace = -1;
-                }
-            }
-        }
-
-        while (seed < 1)
-        {
-            System.out.print("Enter random seed: [0] ");
-            try
-            {
-                buffer = stdIn.readLine();
-            }
-            catch (IOException ioe)
-            {
-                System.out.println("IOError reading your input!");
-                System.exit(1);
-            }
-            
-            if (buffer.equals(""))
-            {
-		seed = 0;
-            }
-            else
-            {            
+                
                 try
                 {
-                    seed = (Integer.valueOf(buffer)).intValue();
+                    settings.set(names[i], buffer);
+                    valid = true;
                 }
-                catch (NumberFormatException nfe)
+                catch (IllegalArgumentException iae)
                 {
-                    seed = -1;
+                    valid = false;
                 }
             }
         }
          
-        simulator = new StudentNetworkSimulator(nsim, loss, corrupt, delay,
-                                                trace, seed, windowsize, timeout);
-                                                
+        simulator = settings.newSimulator();
         simulator.runSimulator();
     }
 }
@@ -0,0 +1,335 @@
+public class SimulatorSettings
+{
+    // The parameters of one run, by the names the command line uses (see
+    // Sweep), each with its meaning, default and range.  Project prompts
+    // for them in this order, and both it and Sweep check values here, so
+    // the ranges live in one place.  newSimulator() builds the run.
+    private static class Setting
+    {
+        String name;
+        double initial;
+        double min;
+        double max;
+        boolean integer;
+        String help;
+
+        Setting(String name, double initial, double min, double max,
+                boolean integer, String help)
+        {
+            this.name = name;
+            this.initial = initial;
+            this.min = min;
+            this.max = max;
+            this.integer = integer;
+            this.help = help;
+        }
+    }
+
+    private static final double NOLIMIT = Double.MAX_VALUE;
+    private static final double POSITIVE = Double.MIN_VALUE;
+
+    private static final Setting[] SETTINGS =
+    {
+        new Setting("messages", 10, 1, Integer.MAX_VALUE, true,
+                    "number of messages to simulate"),
+        new Setting("loss", 0, 0, NOLIMIT, false,
+                    "packet loss probability"),
+        new Setting("corrupt", 0, 0, NOLIMIT, false,
+                    "packet corruption probability"),
+        new Setting("delay", 1000, POSITIVE, NOLIMIT, false,
+                    "average time between messages from layer 5"),
+        new Setting("window", 8, 1, Integer.MAX_VALUE, true,
+                    "window size"),
+        new Setting("timeout", 15, POSITIVE, NOLIMIT, false,
+                    "retransmission timeout"),
+        new Setting("trace", 0, 0, Integer.MAX_VALUE, true,
+                    "trace level"),
+        new Setting("seed", 1, 1, Integer.MAX_VALUE, true,
+                    "random seed"),
+        new Setting("eventlist", 1, 0, 4, true,
+                    "event list (0 = vector, 1 = heap, 2 = calendar " +
+                    "queue, 3 = FIFO merge, 4 = off-heap)"),
+        new Setting("payload", 0, 0, NetworkSimulator.MAXPAYLOADSIZE, true,
+                    "payload size in bytes, 0 for string payloads"),
+        new Setting("checksum", 0, 0, 3, true,
+                    "checksum (0 = additive, 1 = internet, 2 = adler32, " +
+                    "3 = crc32c)"),
+        new Setting("sack", 0, 0, 1, true,
+                    "selective ACK (0 = off, 1 = on)"),
+        new Setting("fastretransmit", 0, 0, 1, true,
+                    "fast retransmit (0 = off, 1 = on)"),
+        new Setting("dupacks", StudentNetworkSimulator.DEFAULTDUPACKS, 1,
+                    Integer.MAX_VALUE, true,
+                    "duplicate ACKs that trigger a fast retransmit"),
+        new Setting("congestion", 0, 0, 1, true,
+                    "congestion control (0 = off, 1 = on)"),
+        new Setting("readinterval", 0, 0, NOLIMIT, false,
+                    "time between B's layer 5 reads, 0 for at once"),
+        new Setting("flowcontrol", 0, 0, 1, true,
+                    "flow control (0 = off, 1 = on)"),
+        new Setting("serial", 0, 0, 1, true,
+                    "sequence numbers (0 = modulo 2 x window, 1 = 32-bit " +
+                    "serial)"),
+        new Setting("messagesize", 0, 0, NetworkSimulator.MAXMESSAGESIZE,
+                    true, "message size in chars, 0 for " +
+                    NetworkSimulator.MAXDATASIZE + "; larger ones are " +
+                    "fragmented"),
+        new Setting("bidirectional", 0, 0, 1, true,
+                    "data from B too (0 = no, 1 = yes)"),
+        new Setting("ackevery", 1, 1, Integer.MAX_VALUE, true,
+                    "delayed ACKs (1 = off, n = ACK every n packets)"),
+        new Setting("ackdelay", 0, 0, NOLIMIT, false,
+                    "ACK delay, 0 for a quarter of the timeout"),
+        new Setting("nak", 0, 0, 1, true,
+                    "NAKs (0 = off, 1 = on)"),
+        new Setting("fec", 0, 0, Integer.MAX_VALUE, true,
+                    "FEC group size (0 = off, k = one parity packet per k " +
+                    "data packets)"),
+        new Setting("sendbuffer", 0, 0, Integer.MAX_VALUE, true,
+                    "send buffer size in packets (0 = unbounded)"),
+        new Setting("bufferpolicy", 0, 0, 2, true,
+                    "full send buffer policy (0 = block layer 5, " +
+                    "1 = drop-tail, 2 = drop-head)")
+    };
+
+    private double[] values;
+
+    public SimulatorSettings()
+    {
+        values = new double[SETTINGS.length];
+        for (int i = 0; i < SETTINGS.length; i++)
+        {
+            values[i] = SETTINGS[i].initial;
+        }
+    }
+
+    public SimulatorSettings(SimulatorSettings s)
+    {
+        values = s.values.clone();
+    }
+
+    // Names of all settings, in prompt order
+    public static String[] getNames()
+    {
+        String[] names = new String[SETTINGS.length];
+        for (int i = 0; i < SETTINGS.length; i++)
+        {
+            names[i] = SETTINGS[i].name;
+        }
+        return names;
+    }
+
+    public static boolean isSetting(String name)
+    {
+        return find(name) >= 0;
+    }
+
+    // One line per setting: name, default and meaning
+    public static String usage()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < SETTINGS.length; i++)
+        {
+            sb.append(String.format("  --%-15s %s [%s]%n", SETTINGS[i].name,
+                                    SETTINGS[i].help,
+                                    format(i, SETTINGS[i].initial)));
+        }
+        return sb.toString();
+    }
+
+    // The interactive prompt for a setting (see Project): its meaning, the
+    // values it takes unless the meaning lists them, and its default
+    public static String prompt(String name)
+    {
+        int i = index(name);
+        Setting s = SETTINGS[i];
+        String range = "";
+        if (s.help.indexOf('(') < 0)
+        {
+            if (s.min == POSITIVE)
+            {
+                range = " (> 0.0)";
+            }
+            else if ((s.max == NOLIMIT) || (s.max == Integer.MAX_VALUE))
+            {
+                range = " (>= " + format(i, s.min) + ")";
+            }
+            else
+            {
+                range = " (" + format(i, s.min) + " - " + format(i, s.max) + ")";
+            }
+        }
+        return "Enter " + s.help + range + ": [" + format(i, s.initial) + "] ";
+    }
+
+    // Throws IllegalArgumentException if there is no such setting or the
+    // value is out of its range
+    public void set(String name, String value)
+    {
+        int i = index(name);
+        double v;
+        try
+        {
+            v = SETTINGS[i].integer ? Integer.parseInt(value.trim())
+                                    : Double.parseDouble(value.trim());
+        }
+        catch (NumberFormatException nfe)
+        {
+            throw new IllegalArgumentException(name + ": not " +
+                (SETTINGS[i].integer ? "an integer" : "a number") +
+                ": " + value);
+        }
+        set(name, v);
+    }
+
+    public void set(String name, double value)
+    {
+        int i = index(name);
+        if (!(value >= SETTINGS[i].min && value <= SETTINGS[i].max) ||
+            (SETTINGS[i].integer && value != Math.rint(value)))
+        {
+            throw new IllegalArgumentException(name + ": out of range: " +
+                                               format(i, value));
+        }
+        values[i] = value;
+    }
+
+    public double get(String name)
+    {
+        return values[index(name)];
+    }
+
+    // The value as the command line would give it
+    public String getText(String name)
+    {
+        int i = index(name);
+        return format(i, values[i]);
+    }
+
+    public StudentNetworkSimulator newSimulator()
+    {
+        int eventlist = (int)get("eventlist");
+        int checksum = (int)get("checksum");
+        int messagesize = (int)get("messagesize");
+        int ackevery = (int)get("ackevery");
+        double timeout = get("timeout");
+
+        StudentNetworkSimulator simulator =
+            new StudentNetworkSimulator((int)get("messages"), get("loss"),
+                                        get("corrupt"), get("delay"),
+                                        (int)get("trace"), (int)get("seed"),
+                                        (int)get("window"), timeout);
+        if (eventlist == 1)
+        {
+            simulator.setEventList(new EventListHeap());
+        }
+        else if (eventlist == 2)
+        {
+            simulator.setEventList(new EventListCalendar());
+        }
+        else if (eventlist == 3)
+        {
+            simulator.setEventList(new EventListFifoMerge());
+        }
+        else if (eventlist == 4)
+        {
+            simulator.setEventList(new EventListOffHeap());
+        }
+        if (get("payload") > 0)
+        {
+            simulator.setPayloadSize((int)get("payload"));
+        }
+        if (checksum == 1)
+        {
+            simulator.setChecksumEngine(new InternetChecksum());
+        }
+        else if (checksum == 2)
+        {
+            simulator.setChecksumEngine(new Adler32Checksum());
+        }
+        else if (checksum == 3)
+        {
+            simulator.setChecksumEngine(new Crc32cChecksum());
+        }
+        if (get("sack") == 1)
+        {
+            simulator.setSack(true);
+        }
+        if (get("fastretransmit") == 1)
+        {
+            simulator.setFastRetransmit(true, (int)get("dupacks"));
+        }
+        if (get("congestion") == 1)
+        {
+            simulator.setCongestionControl(true);
+        }
+        if (get("readinterval") > 0)
+        {
+            simulator.setReadInterval(get("readinterval"));
+        }
+        if (get("flowcontrol") == 1)
+        {
+            simulator.setFlowControl(true);
+        }
+        if (get("serial") == 1)
+        {
+            simulator.setSerialSequenceNumbers(true);
+        }
+        if (messagesize > 0)
+        {
+            simulator.setMessageSize(messagesize);
+        }
+        if (get("bidirectional") == 1)
+        {
+            simulator.setBidirectional(true);
+        }
+        if (ackevery > 1)
+        {
+            simulator.setDelayedAck(ackevery, (get("ackdelay") > 0) ?
+                                              get("ackdelay") : timeout / 4);
+        }
+        if (get("nak") == 1)
+        {
+            simulator.setNak(true);
+        }
+        if (get("fec") > 0)
+        {
+            simulator.setFec((int)get("fec"));
+        }
+        if (get("sendbuffer") > 0)
+        {
+            simulator.setSendBuffer((int)get("sendbuffer"),
+                                    (int)get("bufferpolicy"));
+        }
+
+        return simulator;
+    }
+
+    private static int find(String name)
+    {
+        for (int i = 0; i < SETTINGS.length; i++)
+        {
+            if (SETTINGS[i].name.equals(name))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int index(String name)
+    {
+        int i = find(name);
+        if (i < 0)
+        {
+            throw new IllegalArgumentException("no such setting: " + name);
+        }
+        return i;
+    }
+
+    private static String format(int i, double v)
+    {
+        return SETTINGS[i].integer ? Long.toString((long)v)
+                                   : Double.toString(v);
+    }
+}
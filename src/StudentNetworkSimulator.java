@@ -6,12 +6,19 @@ public class StudentNetworkSimulator extends NetworkSimulator
     /*
      * Predefined Constants (static member variables):
      *
-     *   int MAXDATASIZE : the maximum size of the Message data and
-     *                     Packet payload
+     *   int MAXDATASIZE : the maximum size of the Packet payload (and
+     *                     the default size of the Message data)
+     *   int MAXMESSAGESIZE : the maximum size of the Message data
      *
      *   int A           : a predefined integer that represents entity A
      *   int B           : a predefined integer that represents entity B 
      *
+     * Predefined Member Variables:
+     *
+     *   PrintStream out : where trace and statistics go (System.out unless
+     *                     the simulator was given a stream of its own);
+     *                     print through it rather than System.out
+     *
      * Predefined Member Methods:
      *
      *  void stopTimer(int entity): 
@@ -20,10 +27,50 @@ public class StudentNetworkSimulator extends NetworkSimulator
      *       Starts a timer running at "entity" [A or B], which will expire in
      *       "increment" time units, causing the interrupt handler to be
      *       called.  You should only call this with A.
+     *  TimerHandle getTimer(int entity, int timerId)
+     *       Returns the handle of keyed timer "timerId" at "entity".  Any
+     *       number of keyed timers may run at once; on expiry
+     *       aTimerInterrupt(int timerId) or bTimerInterrupt(int timerId)
+     *       is called.
+     *  TimerHandle startTimer(int entity, int timerId, double increment)
+     *       Starts (or restarts) keyed timer "timerId" at "entity"
+     *  void restartTimer(TimerHandle timer, double increment)
+     *       Starts "timer", or moves its expiry if it is already running.
+     *       Unlike startTimer(int, double) this does not search the event
+     *       list.
+     *  boolean stopTimer(TimerHandle timer)
+     *       Stops "timer"; returns false if it was not running
      *  void toLayer3(int callingEntity, Packet p)
      *       Puts the packet "p" into the network from "callingEntity" [A or B]
      *  void toLayer5(String dataSent)
      *       Passes "dataSent" up to layer 5
+     *  void toLayer5(byte[] dataSent, int length)
+     *       Passes the first "length" bytes of "dataSent" up to layer 5
+     *  void toLayer5(int entity, String dataSent)
+     *  void toLayer5(int entity, byte[] dataSent, int length)
+     *       The same, at "entity" [A or B]
+     *  boolean isBidirectional()
+     *       Returns true if B's layer 5 sends messages too; they arrive
+     *       through bOutput(Message message)
+     *  void releasePayload(byte[] data)
+     *       In byte payload mode, gives a payload buffer back to the
+     *       simulator's pool once the protocol is done with it.  Buffers of
+     *       received packets are recycled as soon as aInput()/bInput()
+     *       returns, so a receiver that keeps a packet must copy it first
+     *       (new Packet(p) copies the bytes).
+     *  void setLayer5Blocked(int entity, boolean blocked)
+     *       Blocks layer 5 at "entity", or unblocks it.  While it is
+     *       blocked, its next message is deferred and no further ones are
+     *       made; unblocking hands the deferred message over at once.
+     *  boolean isLayer5Blocked(int entity)
+     *       Returns true while layer 5 at "entity" is blocked
+     *  int getDeferrals(int entity)
+     *  double getDeferredTime(int entity)
+     *       Return how many messages were deferred at "entity", and the
+     *       time they waited in all
+     *  ChecksumEngine getChecksumEngine()
+     *       Returns the checksum selected for this run.  compute(Packet p)
+     *       returns the checksum of "p" and verify(Packet p) checks it.
      *  double getTime()
      *       Returns the current time in the simulator.  Might be useful for
      *       debugging.
@@ -32,6 +79,11 @@ public class StudentNetworkSimulator extends NetworkSimulator
      *  void printEventList()
      *       Prints the current event list to stdout.  Might be useful for
      *       debugging, but probably not.
+     *  Map<String, Number> getStatistics()
+     *       Returns the statistics of the finished run by name: the
+     *       simulator's own (time, packets into the channel, lost and
+     *       corrupted ones, deferrals).  Override it to add the protocol's
+     *       to what it returns.
      *
      *
      *  Predefined Classes:
@@ -46,6 +98,9 @@ public class StudentNetworkSimulator extends NetworkSimulator
      *          returns true on success, false otherwise
      *      String getData():
      *          returns the data contained in the message
+     *      byte[] getBytes(), int getLength():
+     *          in byte payload mode, return the message's buffer and the
+     *          number of bytes in it (getBytes() is null otherwise)
      *  Packet: Used to encapsulate a packet
      *    Constructors:
      *      Packet (Packet p):
@@ -68,6 +123,9 @@ public class StudentNetworkSimulator extends NetworkSimulator
      *      boolean setChecksum(int n)
      *          sets the Packet's checksum to "n"
      *          returns true on success, false otherwise
+     *      boolean setWindow(int n)
+     *          sets the receive window the Packet advertises to "n" (0
+     *          unless set); compute(Packet p) covers it
      *      boolean setPayload(String newPayload)
      *          sets the Packet's payload to "newPayload"
      *          returns true on success, false otherwise
@@ -77,8 +135,13 @@ public class StudentNetworkSimulator extends NetworkSimulator
      *          returns the contents of the Packet's ack field
      *      int getChecksum()
      *          returns the checksum of the Packet
+     *      int getWindow()
+     *          returns the receive window the Packet advertises
      *      int getPayload()
      *          returns the Packet's payload
+     *      byte[] getData(), int getLength()
+     *          in byte payload mode, return the Packet's buffer and the
+     *          number of payload bytes in it (getData() is null otherwise)
      *
      */
 
@@ -86,6 +149,8 @@ public class StudentNetworkSimulator extends NetworkSimulator
      *   int WindowSize  : the window size
      *   double RxmtInterval   : the retransmission timeout
      *   int LimitSeqNo  : when sequence number reaches this value, it wraps around
+     *                     (unless serial sequence numbers are on, see
+     *                     setSerialSequenceNumbers())
      */
 
     public static final int FirstSeqNo = 0;
@@ -102,23 +167,192 @@ public class StudentNetworkSimulator extends NetworkSimulator
     private int checkSum;
     private int lastSeq;//last seq received by layer5 on receiver side
     private int expecting;//next expecting seq of B side
+    private double echoB;//timestamp of the last data packet B received, echoed on all B sends
     //array to track each pack sent time for selective
     private Queue<Packet> senderBuffer;//sender senderBuffer to store out-of-window packets
-    private Queue<Packet> senderWindow;//used to keep track of packets in the sender window
-    //private PriorityQueue<Packet> receiverBuffer;//buffer on receiver side
-    private List<Packet> receiverBuffer;
+    //sender window: one slot per sequence number, holding seqs windowBase..windowBase+windowCount-1
+    private Packet[] windowSlots;
+    private int windowBase;//oldest unacked seq
+    private int windowCount;//number of packets in the window
+    //receiver buffer: one slot per sequence number, so a packet is found by its seq directly
+    private Packet[] receiverSlots;
+    private boolean[] slotFull;//occupancy of each slot
+    private TimerHandle rxmtTimer;//retransmission timer of A, armed for rxmtWheel's next deadline
+    private TimingWheel rxmtWheel;//retransmission deadline of each packet in the window
+    private int[] expired;//packets rxmtWheel expired when the timer last went off
+    private double[] sentAt;//when each packet in the window was last transmitted
+    private static final int WHEELSLOTS = 64;//slots of rxmtWheel
+    private static final int TICKSPERRXMT = 8;//rxmtWheel ticks per RxmtInterval, i.e. how late a retransmission may be
+    //retransmission timeout, estimated as in RFC 6298 (Jacobson/Karels); RxmtInterval is only the initial value.
+    //Samples come from timestamps (RFC 7323): A stamps each transmission and B echoes the stamp of the last
+    //packet it received, so every ack that acks new data measures the copy that got through, retransmitted or not
+    private double rto;
+    private double srtt;//smoothed RTT, -1 until the first sample
+    private double rttvar;//RTT variation
+    private int[] backoff;//rto multiplier of each packet in the window, doubled on each of its timeouts
+    private static final double ALPHA = 0.125;//gain of srtt
+    private static final double BETA = 0.25;//gain of rttvar
+    private static final int MAXRTOFACTOR = 64;//limit of backoff, and of rto as a multiple of RxmtInterval
+    //selective ack: B's acks carry a bitmap of the packets it has buffered past the cumulative ack
+    private boolean sack;
+    private boolean[] sacked;//packets in A's window that B has reported as buffered
+    private static final int SACKBITS = 32;//packets past the cumulative ack a bitmap can report
+    //fast retransmit: resend the window base once after dupAckThreshold duplicate acks, instead of on every one
+    private boolean fastRetransmit;
+    private int dupAckThreshold = DEFAULTDUPACKS;
+    public static final int DEFAULTDUPACKS = 3;
+    private int dupAcks;//duplicate acks since the cumulative ack last advanced
+    private boolean fastRetransmitted;//the window base was fast retransmitted, wait for new data to be acked
+    //congestion control (AIMD): at most min(cwnd, WindowSize) packets are outstanding
+    private boolean congestionControl;
+    private double cwnd;//congestion window, in packets
+    private double ssthresh;//slow start threshold
+    private int[] sentNo;//number of original packets sent before each packet in the window
+    private int recoverNo;//packets numbered below this were sent before the last window decrease
+    //flow control: B advertises in the window field of each ack (and of its data, in bidirectional mode) how far
+    //past it A may send, and A keeps within it
+    private boolean flowControl;
+    private int peerWindow;//window B advertised last
+    private TimerHandle persistTimer;//asks a zero window to reopen when nothing is in flight
+    private int persistBackoff;
+    private static final int PERSISTTIMER = 1;//timer id of persistTimer (rxmtTimer is 0)
+    //B's layer 5 reads one message every readInterval (0 = at once); until then it holds a slot of B's buffer
+    private double readInterval;
+    private Queue<Packet> unread;//in-order packets layer 5 has not read yet
+    private TimerHandle readTimer;
+    private static final int READTIMER = 0;//timer id of readTimer
+    private int advertised;//window B advertised last, in an ack or its data
+    //delayed acks: B acks every ackEvery-th in-order packet, or when ackTimer fires, whichever is first;
+    //anything out of order, a gap being filled or a duplicate is still acked at once
+    private int ackEvery = 1;//1 = every packet at once
+    private double ackDelay;
+    private TimerHandle ackTimer;
+    private static final int ACKTIMER = 2;//timer id of ackTimer
+    private int unackedB;//in-order packets B has not acked yet
+    private boolean ackPending;//B owes A an ack; the next data B sends takes it along
+    //NAKs: B reports each seq it finds missing (packets past it arrived) in a packet of its own, and A
+    //resends that packet at once; the oldest hole is NAKed again at most every NAKSPACING * RxmtInterval.
+    //A NAK carries the missing seq in its seq field and is told apart from an ack by its checksum, which
+    //has NAKMARK xored in, whatever its payload
+    private boolean nak;
+    private static final int NAKMARK = 0x20000000;
+    private static final double NAKSPACING = 0.5;
+    private double[] nakTime;//when B last NAKed each missing seq
+    private double[] holeSince;//when B found each seq missing, -1 if it is not
+    private int highestB;//highest seq B has received
+    private int outOfOrder;//packets B buffered past a gap
+    //FEC: after every fecGroup original packets A sends a parity packet, the XOR of their payloads (shorter ones
+    //padded with zeros) with the number of the group in its seq field, and B rebuilds the one packet of a group it
+    //is missing from the parity and the rest.  Both ends number groups by the original packets before them.  A
+    //parity packet is told apart from data by its checksum, which has PARITYMARK xored in
+    private int fecGroup;//data packets per parity packet, 0 = off
+    private static final int PARITYMARK = 0x40000000;
+    private char[] parityA;//XOR of the payloads of A's current group
+    private int parityLengthA;
+    private boolean parityBytesA;//the group's payloads are bytes
+    private long[] groupB;//group each entry of the arrays below holds at B, -1 if none
+    private char[][] parityB;//XOR of the payloads B has of the group, parity included
+    private int[] groupLength;
+    private boolean[] groupBytes;
+    private boolean[] groupParity;//the parity packet has arrived
+    private int[] groupCount;//data packets B has of the group
+    private int[] offsetSum;//sum of their offsets in the group, which gives away the missing one
+    private long receivedB;//packets B has taken in order, i.e. the number of expecting
+    //bounded send buffer: senderBuffer holds at most sendBufferSize packets (0 = no limit), and a message that does
+    //not fit either goes in anyway and blocks layer 5 until there is room (BLOCK), is dropped (DROPTAIL), or makes
+    //room by dropping the oldest messages not yet started (DROPHEAD).  A message is taken or dropped whole, and a
+    //buffered packet only gets its seq when it enters the window, so a drop never leaves a hole at B
+    private int sendBufferSize;
+    private int bufferPolicy;
+    public static final int BLOCK = 0;
+    public static final int DROPTAIL = 1;
+    public static final int DROPHEAD = 2;
+    private static final String[] POLICYNAMES = {"block", "drop-tail", "drop-head"};
+    private boolean midMessage;//the packet at the head of senderBuffer is not the first of its message
+    private Trajectory queueDepth;//every change of senderBuffer's size
+    private Queue<Double> queuedSince;//when each packet in senderBuffer was buffered
+    //serial sequence numbers: seqs run over all 32-bit ints and are compared as in RFC 1982, so they never wrap
+    //inside a window; per-packet state then lives in a ring of "slots" entries indexed by seq & slotMask
+    private boolean serial;
+    private int slots;//entries of every per-packet array, LimitSeqNo unless serial
+    private int slotMask;
+    //fragmentation: a String message is sent as fragments of FRAGMENTSIZE chars, each behind a one-char header
+    //saying whether more fragments of the message follow; B joins them again before layer 5
+    private boolean fragmentation;
+    private static final char FRAGMORE = '+';
+    private static final char FRAGLAST = '.';
+    private static final int FRAGMENTSIZE = MAXDATASIZE - 1;
+    private StringBuilder reassembly;//fragments B has delivered of the message it is joining
+    //bidirectional data: B's layer 5 sends messages to A too, over a plain SR connection of its own (no SACK,
+    //fast retransmit or congestion control; A's rto, backed off per packet, as its timeout).  A packet with a payload is data and
+    //carries its sender's cumulative ack in the ack field; an ack packet (no payload) is only sent when no
+    //data can take the ack along
+    private boolean bidirectional;
+    private int seqNoB;
+    private Queue<Packet> senderBufferB;
+    private Packet[] windowSlotsB;
+    private int windowBaseB;
+    private int windowCountB;
+    private TimerHandle rxmtTimerB;//retransmission timer of B, armed for rxmtWheelB's next deadline
+    private TimingWheel rxmtWheelB;
+    private int[] expiredB;
+    private int[] backoffB;
+    private static final int RXMTTIMERB = 1;//timer id of rxmtTimerB (readTimer is 0)
+    private Packet[] receiverSlotsA;
+    private boolean[] slotFullA;
+    private int expectingA;//next expecting seq of B's data at A; ackNoA is the one before
+    private StringBuilder reassemblyA;
+    //A holds its ack for an in-order packet of B's until the next data A sends takes it along, or ackTimerA
+    //fires, or another packet of B's arrives; anything out of order or a duplicate is acked at once
+    private TimerHandle ackTimerA;
+    private static final int ACKTIMERA = 2;//timer id of ackTimerA (persistTimer is 1)
+    private boolean ackPendingA;//A owes B an ack; the next data A sends takes it along
     
     //statistic variables for summary
     private int originalPackets;
     private int retransmission;
     private int layer5B;
     private int ackB;
+    private int duplicatesB;//data packets B already had, i.e. redundant retransmissions
+    private int sackedPackets;//packets A stopped retransmitting because of a SACK
+    private int fastRetransmits;
+    private int zeroWindows;//acks advertising a zero window
+    private int windowProbes;
+    private int receiverDrops;//packets B had no room for
+    private int maxUnread;
+    private int messagesA;//messages from A's layer 5
+    private int fragmentsA;
+    private int[] messagesDelivered = new int[2];//messages delivered whole to each side's layer 5
+    private long[] messageChars = new long[2];
+    private int messagesB;//messages from B's layer 5
+    private int originalPacketsB;
+    private int retransmissionB;
+    private int layer5A;
+    private int ackA;
+    private int piggybackedAcks;
+    private int coalescedAcks;//in-order packets whose ack was left to a later one
+    private int ackTimeouts;//acks sent by ackTimer
+    private int naksSent;
+    private int nakRetransmits;//retransmissions asked for by a NAK
+    private int gapsRepaired;//missing seqs that arrived later
+    private double gapRepairTime;
+    private int parityPackets;
+    private int fecRecovered;//packets B rebuilt from a parity packet
+    private int bufferedPackets;//packets that went from senderBuffer into the window
+    private double queueingTime;//time they spent in senderBuffer
+    private int tailDrops;//messages dropped on arrival for lack of room
+    private int headDrops;//buffered messages dropped to make room
     private int corruptedPackets;
     private double RTT;
     private double[] packetTime;
     private double[] commuPacket;
     private int RTTCount;
     private double totalCommuTime;
+    private int backoffs;//timeouts that doubled a packet's backoff
+    private Trajectory rtoTrajectory;//every rto change
+    private Trajectory cwndTrajectory;//every congestion window change
+    private int cwndDecreases;
+    private static final int TRAJECTORYPOINTS = 20;//points of each trajectory printed by Simulation_done
     
     // This is the constructor.  Don't touch!
     public StudentNetworkSimulator(int numMessages,
@@ -135,6 +369,113 @@ public class StudentNetworkSimulator extends NetworkSimulator
 	LimitSeqNo = winsize*2; // set appropriately; assumes SR here!
 	RxmtInterval = delay;
     }
+    
+    // Turns selective acknowledgements on or off (off by default); call it
+    // before runSimulator()
+    public void setSack(boolean on)
+    {
+    	sack = on;
+    }
+    
+    // Turns fast retransmit on or off (off by default, when every duplicate
+    // ACK resends the window base); dupAcks is the number of duplicate ACKs
+    // that trigger it, DEFAULTDUPACKS unless set.  Call it before
+    // runSimulator()
+    public void setFastRetransmit(boolean on, int dupAcks)
+    {
+    	fastRetransmit = on;
+    	dupAckThreshold = dupAcks;
+    }
+    
+    // Turns congestion control (slow start, congestion avoidance and
+    // multiplicative decrease) on or off (off by default, when WindowSize
+    // packets may always be outstanding).  Call it before runSimulator()
+    public void setCongestionControl(boolean on)
+    {
+    	congestionControl = on;
+    }
+    
+    // Turns receiver flow control on or off (off by default).  Call it
+    // before runSimulator()
+    public void setFlowControl(boolean on)
+    {
+    	flowControl = on;
+    }
+    
+    // Makes B's layer 5 read one message every "interval" instead of at once
+    // (interval 0, the default); unread messages take up B's buffer.  Call
+    // it before runSimulator()
+    public void setReadInterval(double interval)
+    {
+    	readInterval = interval;
+    }
+    
+    // Numbers packets with serial 32-bit sequence numbers (RFC 1982) instead
+    // of modulo LimitSeqNo (off by default).  Per-packet state is then sized
+    // by the window rather than by the sequence space, so windows of 100000
+    // packets and more are practical.  Call it before runSimulator()
+    public void setSerialSequenceNumbers(boolean on)
+    {
+    	serial = on;
+    }
+    
+    // Turns fragmentation on or off (off by default, when a String message
+    // has to fit into one packet).  With it on, every String message is sent
+    // as fragments of at most MAXDATASIZE - 1 chars, so messages of up to
+    // MAXMESSAGESIZE chars go through.  Byte payload packets hold the whole
+    // message and are never fragmented.  setMessageSize() turns it on for
+    // messages longer than MAXDATASIZE.  Call it before runSimulator()
+    public void setFragmentation(boolean on)
+    {
+    	fragmentation = on;
+    }
+    
+    protected boolean enableFragmentation()
+    {
+    	fragmentation = true;
+    	return true;
+    }
+    
+    // Makes B ack only every "every"-th in-order packet, or "delay" after
+    // the first one it has not acked (off by default, every = 1).  Call it
+    // before runSimulator()
+    public void setDelayedAck(int every, double delay)
+    {
+    	ackEvery = every;
+    	ackDelay = delay;
+    }
+    
+    // Turns NAKs on or off (off by default, when A only learns about a
+    // lost packet from duplicate ACKs or its timeout).  With NAKs on,
+    // duplicate ACKs resend nothing, fast retransmit included.  Call it
+    // before runSimulator()
+    public void setNak(boolean on)
+    {
+    	nak = on;
+    }
+    
+    // Makes A send a parity packet after every k original packets (off by
+    // default, k = 0), from which B rebuilds one lost packet of the k
+    // without a retransmission.  The last group of a run, if it is not
+    // full, has no parity.  Call it before runSimulator()
+    public void setFec(int k)
+    {
+    	fecGroup = k;
+    }
+    
+    // Bounds A's send buffer to "capacity" packets (0 = unbounded, the
+    // default) and says what happens to a message that does not fit: BLOCK
+    // holds layer 5 back until there is room again, DROPTAIL drops the new
+    // message and DROPHEAD the oldest buffered ones.  Call it before
+    // runSimulator()
+    public void setSendBuffer(int capacity, int policy)
+    {
+    	sendBufferSize = capacity;
+    	bufferPolicy = policy;
+    }
+    
+    // B's data (see isBidirectional()) needs no setter: it is on whenever
+    // the simulator sends messages from B
 
     // This routine will be called whenever the upper layer at the sender [A]
     // has a message to send.  It is the job of your protocol to insure that
@@ -142,30 +483,24 @@ public class StudentNetworkSimulator extends NetworkSimulator
     // the receiving upper layer.
     protected void aOutput(Message message)
     {
-    	//Encapsulate packet from msg
-    	//calculate checksum by adding sequence number, ack number and each char of payload together
-    	checkSum = seqNoA + ackNoA;
-    	String payload = message.getData();
-    	for(char c: payload.toCharArray())
-    		checkSum += (int) c;
-    	Packet newPack = new Packet(seqNoA, ackNoA, checkSum, payload);
-    	//while the window is not full, send pack to window
-    	if(senderWindow.size() < WindowSize) {
-    		senderWindow.add(newPack);
-    		stopTimer(0);
-    		startTimer(0, RxmtInterval);
-    		toLayer3(0, newPack);
-    		originalPackets++;
-    		packetTime[seqNoA] = getTime();//record the initial time
-    		commuPacket[seqNoA] = getTime();//record the initial time(for total communication time)
+    	messagesA++;
+    	boolean fragments = fragmentation && message.getBytes() == null;
+    	if(!admit(fragments ? Math.max((message.getLength() + FRAGMENTSIZE - 1) / FRAGMENTSIZE, 1) : 1)) {
+    		releasePayload(message.getBytes());
+    		return;
     	}
-    	//otherwise send to buffer
-    	else {
-    		senderBuffer.add(newPack);
+    	//cut a String message into fragments, one packet each
+    	if(fragments) {
+    		sendFragments(A, message.getData());
+    		return;
     	}
-    	
-    	
-    	seqNoA = seqNoA == LimitSeqNo - 1 ? 0 : seqNoA + 1;//if reaching seq limit, reset to 0
+    	//Encapsulate packet from msg (a byte payload buffer is taken over, not copied)
+    	Packet newPack;
+    	if(message.getBytes() != null)
+    		newPack = new Packet(seqNoA, ackNoA, 0, message.getBytes(), message.getLength());
+    	else
+    		newPack = new Packet(seqNoA, ackNoA, 0, message.getData());
+    	sendData(newPack);
     }
     
     // This routine will be called whenever a packet sent from the B-side 
@@ -176,75 +511,149 @@ public class StudentNetworkSimulator extends NetworkSimulator
     {
     	//check if checksum is correct
     	int seq = packet.getSeqnum();
-    	int ack = packet.getAcknum();
-    	int calculatedCheck = seq + ack;
-    	String payload = packet.getPayload();
-    	for(char c: payload.toCharArray())
-    		calculatedCheck += (int) c;
-    	if(senderWindow.isEmpty())
+    	boolean nakked = nak && (getChecksumEngine().compute(packet) ^ NAKMARK) == packet.getChecksum();
+    	boolean data = bidirectional && packet.getLength() > 0 && !nakked;//data from B, its ack is in the ack field
+    	if(windowCount == 0 && !data)
     		return;
+    	if(nakked) {
+    		resendNakked(seq);
+    	}
     	//if corrupted, do nothing
-    	if(calculatedCheck != packet.getChecksum()){
+    	else if(!getChecksumEngine().verify(packet)){
     		corruptedPackets++;
     	}
     	else {
-    		//check whether ack is within the window
-    		boolean containsSeq = false;
-    		for(Packet p : senderWindow) {
-    			if(p.getSeqnum() == seq)
-    				containsSeq = true;
+    		boolean inOrder = false;
+    		if(data) {
+    			inOrder = receiveAtA(packet);
+    			ackPendingA = true;
+    			seq = packet.getAcknum();
     		}
-    		//if ack in window, remove packets till the one next to ack
-    		if(containsSeq) {
-    			int num = -1;
-    			do {
-    				num = senderWindow.poll().getSeqnum();
+    		if(flowControl)
+    			readPeerWindow(packet);
+    		//number of packets the ack covers, 0 if it is outside the window
+    		int acked = ackedCount(seq);
+    		//if ack in window, slide the window past it
+    		if(acked > 0) {
+    			for(int i = 0; i < acked; i++) {
+    				int num = slot(windowBase);
+    				releasePayload(windowSlots[num].getData());//buffer no longer needed for retransmission
+    				windowSlots[num] = null;
+    				sacked[num] = false;
+    				rxmtWheel.cancel(num);
     				//if same, calculate rtt time for this packet
-    				if(num == seq && packetTime[num] != -1) {
+    				if(windowBase == seq && packetTime[num] != -1) {
     					RTT += getTime() - packetTime[num];
     					RTTCount++;
     				}
-    					packetTime[num] = -1;//reset the packet time
-    					totalCommuTime += getTime() - commuPacket[num];//get packet time for total communication time
+    				packetTime[num] = -1;//reset the packet time
+    				totalCommuTime += getTime() - commuPacket[num];//get packet time for total communication time
+    				windowBase = nextSeq(windowBase, 1);
     			}
-    			while(num != seq);
+    			windowCount -= acked;
+    			if(packet.getTimestamp() > 0)
+    				sampleRtt(getTime() - packet.getTimestamp());
+    			congestionAck(acked);
+    			//new data acked, so the next loss may be fast retransmitted again
+    			dupAcks = 0;
+    			fastRetransmitted = false;
     		}
     		//otherwise it means duplicate, retransmit first unacked packet
-    		else {
-    			toLayer3(0, senderWindow.peek());//retransmit
-    			packetTime[senderWindow.peek().getSeqnum()] = -1;
-    			stopTimer(0);
-        		startTimer(0, RxmtInterval);
+    		//(without fast retransmit, at most once per round trip: a duplicate ack back sooner than that
+    		//left B before the base's last copy can have arrived, and as B only acks cumulatively, every
+    		//packet B already buffered that times out brings one back;
+    		//with fast retransmit, only at the threshold and only once until new data is acked;
+    		//with NAKs not at all, not even as a fast retransmit, as B names the missing packets
+    		//itself and the NAK has resent the packet already;
+    		//data that merely repeats the last ack is no duplicate ack, and neither is an ack closing
+    		//the window, which only answers a probe or a packet B had no room for: the persist timer
+    		//and the retransmission timeout go on from there)
+    		else if(!data && !nak && !(flowControl && peerWindow == 0)
+    				&& (!fastRetransmit ? getTime() - sentAt[slot(windowBase)] >= roundTrip()
+    				                    : ++dupAcks >= dupAckThreshold && !fastRetransmitted)) {
+    			if(fastRetransmit) {
+    				fastRetransmitted = true;
+    				fastRetransmits++;
+    			}
+    			int base = slot(windowBase);
+    			congestionLoss(base, false);
+    			transmitA(windowSlots[base]);//retransmit
+    			packetTime[base] = -1;
+        		armRetransmit(base);
         		retransmission++;
     		}
+    		//packets B already buffered are not retransmitted any more
+    		if(sack && !data)
+    			applySack(seq, packet.getAcknum());
     		//push packets from senderBuffer to window if available
-    		while(senderWindow.size() < WindowSize && !senderBuffer.isEmpty()) {
-    			Packet newpck = senderBuffer.poll();
-    			senderWindow.add(newpck);
-    			toLayer3(0, newpck);
-    			stopTimer(0);
-    			startTimer(0, RxmtInterval);
-    			originalPackets++;
-    			packetTime[newpck.getSeqnum()] = getTime();
+    		while(windowCount < sendWindow() && !senderBuffer.isEmpty())
+    			sendFromBuffer();
+    		if(windowCount == 0) {
+    			stopTimer(rxmtTimer);
     		}
-    		if(senderWindow.isEmpty()) {
-    			stopTimer(0);
+    		if(flowControl)
+    			checkPersist();
+    		//B's data is acked by the data just sent, or else later, or else by an ack packet now
+    		if(ackPendingA) {
+    			if(inOrder && !ackTimerA.isRunning())
+    				restartTimer(ackTimerA, ackEvery > 1 ? ackDelay : RxmtInterval / 4);
+    			else
+    				sendAckA();
     		}
     	}
     }
     
+    //sends A's ack for B's data as a packet of its own
+    private void sendAckA() {
+    	Packet ack = new Packet(ackNoA, 1, 0);
+    	ack.setChecksum(getChecksumEngine().compute(ack));
+    	toLayer3(0, ack);
+    	ackA++;
+    	ackSentA();
+    }
+    
+    //A's ack just went out, alone or on data: nothing is left to hold
+    private void ackSentA() {
+    	ackPendingA = false;
+    	stopTimer(ackTimerA);
+    }
+    
+    protected void aTimerInterrupt(int timerId)
+    {
+    	if(timerId == PERSISTTIMER)
+    		persistTimeout();
+    	else if(timerId == ACKTIMERA)
+    		sendAckA();//the ack A held back is due
+    	else
+    		aTimerInterrupt();
+    }
+    
     // This routine will be called when A's timer expires (thus generating a 
     // timer interrupt). You'll probably want to use this routine to control 
     // the retransmission of packets. See startTimer() and stopTimer(), above,
     // for how the timer is started and stopped. 
     protected void aTimerInterrupt()
     {
-    	System.out.println("Timeout!");
-    	stopTimer(0);
-    	toLayer3(0, senderWindow.peek());//resend the oldest one in the window
-    	startTimer(0, RxmtInterval);
-    	retransmission++;
-    	packetTime[senderWindow.peek().getSeqnum()] = -1;
+    	//nothing may be due if the packet the timer was armed for has been acked since
+    	int count = rxmtWheel.advance(getTime(), expired);
+    	if(count > 0 && traceLevel > 0)
+    		out.println("Timeout!");
+    	//resend only the packets whose own deadline has passed
+    	for(int i = 0; i < count; i++) {
+    		int k = expired[i];//the wheel holds slots, not seqs
+    		congestionLoss(k, true);
+    		transmitA(windowSlots[k]);
+    		//exponential backoff, per packet: only the packet that keeps timing out waits longer
+    		if(backoff[k] < MAXRTOFACTOR) {
+    			backoff[k] *= 2;
+    			backoffs++;
+    		}
+    		armRetransmit(k);
+    		retransmission++;
+    		packetTime[k] = -1;
+    	}
+    	if(!rxmtWheel.isEmpty())
+    		restartTimer(rxmtTimer, rxmtWheel.nextDeadline() - getTime());
     }
     
     // This routine will be called once, before any of your other A-side 
@@ -253,23 +662,92 @@ public class StudentNetworkSimulator extends NetworkSimulator
     // of entity A).
     protected void aInit()
     {
+    	initSlots();
+    	bidirectional = isBidirectional();
     	seqNoA = FirstSeqNo;
-    	ackNoA = 0;
+    	ackNoA = bidirectional ? FirstSeqNo - 1 : 0;
+    	receiverSlotsA = new Packet[slots];
+    	slotFullA = new boolean[slots];
+    	expectingA = FirstSeqNo;
+    	reassemblyA = new StringBuilder();
+    	ackTimerA = getTimer(0, ACKTIMERA);
+    	ackPendingA = false;
     	senderBuffer = new LinkedList<Packet>();
-    	senderWindow = new LinkedList<Packet>();
+    	windowSlots = new Packet[slots];
+    	windowBase = FirstSeqNo;
+    	windowCount = 0;
+    	rxmtTimer = getTimer(0, 0);
+    	rxmtWheel = new TimingWheel(slots, WHEELSLOTS, RxmtInterval / TICKSPERRXMT);
+    	expired = new int[slots];
+    	sentAt = new double[slots];
     	//for statistics: 
     	originalPackets = 0;
     	retransmission = 0;
+    	messagesA = 0;
+    	fragmentsA = 0;
+    	nakRetransmits = 0;
+    	parityPackets = 0;
+    	parityA = new char[MAXDATASIZE];
+    	parityLengthA = 0;
+    	layer5A = 0;
+    	ackA = 0;
+    	piggybackedAcks = 0;
     	corruptedPackets = 0;
     	RTT = 0.0;
     	RTTCount = 0;
     	totalCommuTime = 0.0;
-    	packetTime = new double[LimitSeqNo];//used to track RTT for each packet
+    	srtt = -1;
+    	backoff = new int[slots];
+    	sacked = new boolean[slots];
+    	sackedPackets = 0;
+    	dupAcks = 0;
+    	fastRetransmitted = false;
+    	fastRetransmits = 0;
+    	cwnd = 1;
+    	ssthresh = WindowSize;
+    	sentNo = new int[slots];
+    	recoverNo = 0;
+    	cwndDecreases = 0;
+    	cwndTrajectory = new Trajectory();
+    	cwndTrajectory.add(getTime(), cwnd);
+    	peerWindow = WindowSize;
+    	persistTimer = getTimer(0, PERSISTTIMER);
+    	persistBackoff = 1;
+    	zeroWindows = 0;
+    	windowProbes = 0;
+    	rttvar = 0;
+    	backoffs = 0;
+    	rtoTrajectory = new Trajectory();
+    	queueDepth = new Trajectory();
+    	queueDepth.add(getTime(), 0);
+    	queuedSince = new LinkedList<Double>();
+    	bufferedPackets = 0;
+    	queueingTime = 0;
+    	tailDrops = 0;
+    	headDrops = 0;
+    	midMessage = false;
+    	setRto(RxmtInterval);
+    	packetTime = new double[slots];//used to track RTT for each packet
     	Arrays.fill(packetTime, -1);
-    	commuPacket = new double[LimitSeqNo];
+    	commuPacket = new double[slots];
     	Arrays.fill(commuPacket, -1);
     }
     
+    // This routine will be called whenever the upper layer at B has a
+    // message to send to A (only if isBidirectional()).
+    protected void bOutput(Message message)
+    {
+    	messagesB++;
+    	if(fragmentation && message.getBytes() == null) {
+    		sendFragments(B, message.getData());
+    		return;
+    	}
+    	if(message.getBytes() != null)
+    		sendDataB(new Packet(seqNoB, lastSeq, 0, message.getBytes(), message.getLength()));
+    	else
+    		sendDataB(new Packet(seqNoB, lastSeq, 0, message.getData()));
+    }
+    
     // This routine will be called whenever a packet sent from the B-side 
     // (i.e. as a result of a toLayer3() being done by an A-side procedure)
     // arrives at the B-side.  "packet" is the (possibly corrupted) packet
@@ -278,100 +756,928 @@ public class StudentNetworkSimulator extends NetworkSimulator
     {
     	//check if checksum is correct
     	int seq = packet.getSeqnum();
-    	int ack = packet.getAcknum();
-    	int calculatedCheck = seq + ack;
-    	String payload = packet.getPayload();
-    	for(char c: payload.toCharArray())
-    		calculatedCheck += (int) c;
     	//if corrupted, do nothing
-    	if(calculatedCheck != packet.getChecksum()) {
-    		corruptedPackets++;
+    	if(!getChecksumEngine().verify(packet)) {
+    		if(fecGroup > 0 && (getChecksumEngine().compute(packet) ^ PARITYMARK) == packet.getChecksum())
+    			parityAtB(packet);
+    		else
+    			corruptedPackets++;
     		return;
     	}
+    	//an ack for B's data, alone or on A's data
+    	if(bidirectional) {
+    		boolean data = packet.getLength() > 0;
+    		ackedAtB(data ? packet.getAcknum() : seq);
+    		if(!data) {
+    			refillB();
+    			return;
+    		}
+    	}
+    	//the ack this packet brings on echoes its stamp, so A measures the copy that got through
+    	echoB = packet.getTimestamp();
     	//if duplicated, drop and re-ack
-    	else if(!inWindow(seq)){
-    		toLayer3(1, new Packet(lastSeq, 1, lastSeq + 1));
-    		ackB++;
+    	if(!inWindow(seq)){
+    		duplicatesB++;
+    		ackData();
+    		return;
+    	}
+    	//no room left behind the packets layer 5 has not read yet: drop and re-ack
+    	else if(seqDistance(expecting, seq) >= WindowSize - unread.size()) {
+    		receiverDrops++;
+    		ackData();
     		return;
     	}
-    	//if new, just put into the buffer
-    	else{
-    		receiverBuffer.add(0, packet);
+    	//if new, just put into its slot (a copy already buffered is kept)
+    	else if(!slotFull[slot(seq)]){
+    		//a packet that outlives this call (out of order, or waiting to be read) is kept as a copy
+    		store(seq == expecting && readInterval == 0 ? packet : new Packet(packet));
+    	}
+    	else {
+    		duplicatesB++;
+    	}
+    	deliverInOrder();
+    }
+    
+    //puts a new packet into its slot at B
+    private void store(Packet packet) {
+    	int seq = packet.getSeqnum();
+    	receiverSlots[slot(seq)] = packet;
+    	slotFull[slot(seq)] = true;
+    	outOfOrder++;
+    	if(holeSince[slot(seq)] >= 0) {
+    		gapRepairTime += getTime() - holeSince[slot(seq)];
+    		gapsRepaired++;
+    		holeSince[slot(seq)] = -1;
+    		nakTime[slot(seq)] = Double.NEGATIVE_INFINITY;
     	}
-    	
+    	if(seq != expecting)
+    		detectGaps(seq);
+    	if(fecGroup > 0)
+    		addToGroup(packet);
+    }
+    
+    //acks what B has now, after delivering it if it is in order
+    private void deliverInOrder() {
     	//check whether the buffer is in order
-    	//if true, dump every ordered packet to layer 5
-    	if(seq == expecting) {
-    		boolean containsExpect = false;
-        	do {
-        		containsExpect = false;
-        		for(Packet p : receiverBuffer) {
-            		if(p.getSeqnum() == expecting) {
-            			containsExpect = true;
-            			toLayer5(p.getPayload());
-            			layer5B++;
-            			receiverBuffer.remove(p);
-            			lastSeq = expecting;
-            			expecting = (expecting + 1) % LimitSeqNo;
-            			break;
-            		}
-            	}
-        	}while(containsExpect);
-        	toLayer3(1, new Packet(lastSeq, 1, lastSeq + 1));
-        	ackB++;
+    	//if true, dump every ordered packet to layer 5, one slot at a time
+    	if(slotFull[slot(expecting)]) {
+    		int delivered = 0;
+    		while(slotFull[slot(expecting)]) {
+    			int k = slot(expecting);
+    			consume(receiverSlots[k]);
+    			receiverSlots[k] = null;
+    			slotFull[k] = false;
+    			lastSeq = expecting;
+    			expecting = nextSeq(expecting, 1);
+    			receivedB++;
+    			delivered++;
+    		}
+    		outOfOrder -= delivered;
+    		if(outOfOrder == 0)
+    			highestB = lastSeq;//nothing is buffered past what was delivered
+    		//a lone in-order packet may leave its ack to the next one, or to the ack timer
+    		if(ackEvery > 1 && delivered == 1 && outOfOrder == 0 && ++unackedB < ackEvery) {
+    			ackPending = true;
+    			if(!ackTimer.isRunning())
+    				restartTimer(ackTimer, ackDelay);
+    			coalescedAcks++;
+    		}
+    		else
+    			ackData();
     	}
     	//otherwise ack last received packet sequence
     	else {
-    		toLayer3(1, new Packet(lastSeq, 1, lastSeq + 1));
-			ackB++;
+    		ackData();
     	}
     }
     
-    //helper function to check if ack is within receiver's window, if not, it means duplicated ack
-    private boolean inWindow(int a) {
-    	int temp = expecting;
-    	for(int i = 0; i < WindowSize; i++) {
-    		if(a == temp)
+    //build the ACK packet B sends for "seq"
+    private Packet makeAck(int seq) {
+    	Packet ack = new Packet(seq, sack ? sackBitmap() : 1, 0);
+    	ack.setTimestamp(echoB);
+    	if(flowControl)
+    		ack.setWindow(advertise());
+    	ack.setChecksum(getChecksumEngine().compute(ack));
+    	return ack;
+    }
+    
+    //the window B advertises now: the room left behind the packets layer 5 has not read yet
+    private int advertise() {
+    	advertised = WindowSize - unread.size();
+    	return advertised;
+    }
+    
+    //pass a packet's payload up to entity's layer 5; a fragment waits until its message is complete
+    private void deliver(int entity, Packet p) {
+    	int length;
+    	if(p.getData() != null) {
+    		toLayer5(entity, p.getData(), p.getLength());
+    		length = p.getLength();
+    	}
+    	else if(fragmentation) {
+    		StringBuilder joining = entity == B ? reassembly : reassemblyA;
+    		String payload = p.getPayload();
+    		joining.append(payload, 1, payload.length());
+    		if(payload.charAt(0) != FRAGLAST)
+    			return;
+    		toLayer5(entity, joining.toString());
+    		length = joining.length();
+    		joining.setLength(0);
+    	}
+    	else {
+    		toLayer5(entity, p.getPayload());
+    		length = p.getPayload().length();
+    	}
+    	messagesDelivered[entity]++;
+    	messageChars[entity] += length;
+    }
+    
+    //sends a String message from A or B as fragments, one packet each
+    private void sendFragments(int entity, String data) {
+    	int offset = 0;
+    	do {
+    		int end = Math.min(offset + FRAGMENTSIZE, data.length());
+    		String fragment = (end < data.length() ? FRAGMORE : FRAGLAST) + data.substring(offset, end);
+    		if(entity == A) {
+    			sendData(new Packet(seqNoA, ackNoA, 0, fragment));
+    			fragmentsA++;
+    		}
+    		else
+    			sendDataB(new Packet(seqNoB, lastSeq, 0, fragment));
+    		offset = end;
+    	} while(offset < data.length());
+    }
+    
+    //hands an in-order packet to layer 5, or queues it until layer 5 reads it
+    private void consume(Packet p) {
+    	if(readInterval == 0) {
+    		deliver(B, p);
+    		layer5B++;
+    		return;
+    	}
+    	unread.add(p);
+    	maxUnread = Math.max(maxUnread, unread.size());
+    	if(!readTimer.isRunning())
+    		restartTimer(readTimer, readInterval);
+    }
+    
+    //sends a new data packet, or buffers it while the window is full
+    private void sendData(Packet newPack) {
+    	//while the window is not full, send pack to window
+    	if(windowCount < sendWindow() && senderBuffer.isEmpty()) {
+    		enterWindow(newPack);
+    	}
+    	//otherwise send to buffer
+    	else {
+    		senderBuffer.add(newPack);
+    		queuedSince.add(getTime());
+    		queueDepth.add(getTime(), senderBuffer.size());
+    		if(bufferPolicy == BLOCK && sendBufferSize > 0 && senderBuffer.size() >= sendBufferSize)
+    			setLayer5Blocked(A, true);
+    	}
+    	if(flowControl)
+    		checkPersist();
+    }
+    
+    //moves the next buffered packet into the window and sends it
+    private void sendFromBuffer() {
+    	Packet newpck = senderBuffer.poll();
+    	queueingTime += getTime() - queuedSince.poll();
+    	bufferedPackets++;
+    	queueDepth.add(getTime(), senderBuffer.size());
+    	midMessage = continues(newpck);
+    	if(isLayer5Blocked(A) && senderBuffer.size() < sendBufferSize)
+    		setLayer5Blocked(A, false);
+    	enterWindow(newpck);
+    }
+    
+    //gives a new packet the next seq and sends it as the newest one in the window
+    private void enterWindow(Packet newPack) {
+    	newPack.setSeqnum(seqNoA);
+    	checkSum = getChecksumEngine().compute(newPack);//computed once, reused by every retransmission
+    	newPack.setChecksum(checkSum);
+    	int k = slot(seqNoA);
+    	windowSlots[k] = newPack;
+    	sentNo[k] = originalPackets;
+    	windowCount++;
+    	backoff[k] = 1;
+    	armRetransmit(k);
+    	transmitA(newPack);
+    	originalPackets++;
+    	if(fecGroup > 0)
+    		addToParity(newPack);
+    	packetTime[k] = getTime();//record the initial time
+    	commuPacket[k] = getTime();//record the initial time(for total communication time)
+    	seqNoA = nextSeq(seqNoA, 1);//modulo LimitSeqNo, except in serial mode
+    }
+    
+    //whether a message of "packets" packets may go into senderBuffer, after dropping older ones if that is the policy
+    private boolean admit(int packets) {
+    	if(sendBufferSize == 0 || bufferPolicy == BLOCK)
+    		return true;//layer 5 was blocked when the buffer filled up, so what it still sent is taken
+    	while(packets > bufferRoom()) {
+    		if(bufferPolicy != DROPHEAD || !dropHead()) {
+    			tailDrops++;
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+    
+    //packets a new message can put into senderBuffer, or straight into the window while the buffer is empty
+    private int bufferRoom() {
+    	int room = sendBufferSize - senderBuffer.size();
+    	if(senderBuffer.isEmpty())
+    		room += Math.max(sendWindow() - windowCount, 0);
+    	return room;
+    }
+    
+    //drops the oldest buffered message whose first packet is still buffered; false if there is none
+    private boolean dropHead() {
+    	Iterator<Packet> it = senderBuffer.iterator();
+    	Iterator<Double> since = queuedSince.iterator();
+    	boolean skipping = midMessage;//the rest of a message already on its way is kept
+    	while(it.hasNext()) {
+    		Packet p = it.next();
+    		since.next();
+    		if(skipping) {
+    			skipping = continues(p);
+    			continue;
+    		}
+    		it.remove();
+    		since.remove();
+    		releasePayload(p.getData());
+    		if(!continues(p)) {
+    			headDrops++;
+    			queueDepth.add(getTime(), senderBuffer.size());
     			return true;
-    		temp = temp == LimitSeqNo - 1? 0 : temp + 1;
+    		}
     	}
     	return false;
     }
     
+    //whether more fragments of p's message follow it
+    private boolean continues(Packet p) {
+    	return fragmentation && p.getData() == null && p.getPayload().charAt(0) == FRAGMORE;
+    }
+    
+    //takes the window B advertises in the header of a (checksum-verified) ack, or of its data
+    private void readPeerWindow(Packet ack) {
+    	peerWindow = ack.getWindow();
+    	if(peerWindow == 0)
+    		zeroWindows++;
+    }
+    
+    //a zero window with nothing in flight gets no acks that could reopen it, so A has to probe
+    private void checkPersist() {
+    	if(peerWindow == 0 && windowCount == 0 && !senderBuffer.isEmpty()) {
+    		if(!persistTimer.isRunning())
+    			restartTimer(persistTimer, Math.min(rto * persistBackoff, MAXRTOFACTOR * RxmtInterval));
+    	}
+    	else {
+    		stopTimer(persistTimer);
+    		if(peerWindow > 0)
+    			persistBackoff = 1;
+    	}
+    }
+    
+    //sends one packet past the zero window; B answers it (or drops and answers it) with its current window,
+    //and until then the probe is retransmitted like any other packet
+    private void persistTimeout() {
+    	if(peerWindow != 0 || windowCount != 0 || senderBuffer.isEmpty())
+    		return;
+    	sendFromBuffer();
+    	windowProbes++;
+    	persistBackoff = Math.min(persistBackoff * 2, MAXRTOFACTOR);
+    }
+    
+    //gives packet seq a fresh retransmission deadline, its backed-off rto from now
+    private void armRetransmit(int seq) {
+    	double timeout = Math.min(rto * backoff[seq], MAXRTOFACTOR * RxmtInterval);
+    	if(rxmtWheel.schedule(seq, getTime() + timeout, getTime()))
+    		restartTimer(rxmtTimer, rxmtWheel.nextDeadline() - getTime());//it is the earliest deadline now
+    }
+    
+    //folds one RTT measurement into srtt/rttvar and recomputes the rto
+    private void sampleRtt(double r) {
+    	if(srtt < 0) {
+    		srtt = r;
+    		rttvar = r / 2;
+    	}
+    	else {
+    		rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - r);
+    		srtt = (1 - ALPHA) * srtt + ALPHA * r;
+    	}
+    	//the wheel tick is the clock granularity G of RFC 6298
+    	setRto(srtt + Math.max(rxmtWheel.getTick(), 4 * rttvar));
+    }
+    
+    private void setRto(double r) {
+    	rto = Math.min(r, MAXRTOFACTOR * RxmtInterval);
+    	rtoTrajectory.add(getTime(), rto);
+    }
+    
+    //bit i is set if B has buffered seq expecting+1+i (expecting itself is the hole)
+    private int sackBitmap() {
+    	int bitmap = 0;
+    	int bits = Math.min(WindowSize - 1, SACKBITS);
+    	for(int i = 0; i < bits; i++) {
+    		if(slotFull[slot(nextSeq(expecting, 1 + i))])
+    			bitmap |= 1 << i;
+    	}
+    	return bitmap;
+    }
+    
+    //takes every packet a SACK bitmap reports off the retransmission wheel; it stays in the window until cumulatively acked
+    private void applySack(int cumAck, int bitmap) {
+    	boolean news = false;
+    	while(bitmap != 0) {
+    		int i = Integer.numberOfTrailingZeros(bitmap);
+    		bitmap &= bitmap - 1;
+    		int s = nextSeq(cumAck, 2 + i);//cumAck is -1 before B has delivered anything
+    		if(ackedCount(s) > 0 && !sacked[slot(s)]) {
+    			sacked[slot(s)] = true;
+    			rxmtWheel.cancel(slot(s));
+    			sackedPackets++;
+    			news = true;
+    		}
+    	}
+    	//B is still receiving, so the hole at the window base is a plain loss: stop backing it off.
+    	//Once everything behind it is SACKed no dup acks come back, and only its timer can repair it
+    	if(news)
+    		backoff[slot(windowBase)] = 1;
+    }
+    
+    //how many packets may be outstanding
+    private int sendWindow() {
+    	int window = congestionControl ? Math.min(WindowSize, (int)cwnd) : WindowSize;
+    	return flowControl ? Math.min(window, peerWindow) : window;
+    }
+    
+    //additive increase: one packet per acked packet in slow start, one per window in congestion avoidance
+    private void congestionAck(int acked) {
+    	if(!congestionControl)
+    		return;
+    	for(int i = 0; i < acked && cwnd < WindowSize; i++)
+    		cwnd += cwnd < ssthresh ? 1 : 1 / cwnd;
+    	cwnd = Math.min(cwnd, WindowSize);//a window the sender can never fill is no evidence of capacity
+    	cwndTrajectory.add(getTime(), cwnd);
+    }
+    
+    //multiplicative decrease when packet seq is retransmitted, once per window of data:
+    //losses among the packets sent before the last decrease belong to the same congestion event
+    private void congestionLoss(int seq, boolean timeout) {
+    	if(!congestionControl)
+    		return;
+    	if(sentNo[seq] >= recoverNo) {
+    		ssthresh = Math.max(windowCount / 2.0, 2);
+    		cwnd = timeout ? 1 : ssthresh;
+    		recoverNo = originalPackets;
+    		cwndDecreases++;
+    	}
+    	else if(timeout) {
+    		cwnd = 1;//a timeout always restarts slow start
+    	}
+    	cwndTrajectory.add(getTime(), cwnd);
+    }
+    
+    //number of window packets a cumulative ack for seq a covers, or 0 if a is not in the sender window
+    private int ackedCount(int a) {
+    	if(!serial && (a < 0 || a >= LimitSeqNo))
+    		return 0;
+    	int distance = seqDistance(windowBase, a);
+    	return distance >= 0 && distance < windowCount ? distance + 1 : 0;
+    }
+    
+    //helper function to check if ack is within receiver's window, if not, it means duplicated ack
+    private boolean inWindow(int a) {
+    	if(!serial && (a < 0 || a >= LimitSeqNo))
+    		return false;
+    	//distance from expecting going forward around the sequence space
+    	int distance = seqDistance(expecting, a);
+    	return distance >= 0 && distance < WindowSize;
+    }
+    
+    //the seq n packets after s
+    private int nextSeq(int s, int n) {
+    	return serial ? s + n : (s + n) % LimitSeqNo;//serial seqs just overflow past 2^31-1
+    }
+    
+    //how far "to" is after "from"; modulo LimitSeqNo this is never negative,
+    //serially it is negative when "to" comes first (RFC 1982, with int overflow doing the wrap)
+    private int seqDistance(int from, int to) {
+    	return serial ? to - from : (to - from + LimitSeqNo) % LimitSeqNo;
+    }
+    
+    //index of seq in the per-packet arrays
+    private int slot(int seq) {
+    	return serial ? seq & slotMask : seq;
+    }
+    
+    //sizes the per-packet arrays: one entry per seq, or serially a ring of at least WindowSize entries
+    private void initSlots() {
+    	if(serial) {
+    		slots = Integer.highestOneBit(Math.max(WindowSize, 1));
+    		if(slots < WindowSize)
+    			slots <<= 1;
+    		slotMask = slots - 1;
+    	}
+    	else {
+    		slots = LimitSeqNo;
+    	}
+    }
+    
+    //sends a data packet of A's, with the latest ack for B's data on it
+    private void transmitA(Packet p) {
+    	if(bidirectional && p.getAcknum() != ackNoA) {
+    		p.setAcknum(ackNoA);
+    		p.setChecksum(getChecksumEngine().compute(p));
+    	}
+    	if(ackPendingA) {
+    		piggybackedAcks++;
+    		ackSentA();
+    	}
+    	sentAt[slot(p.getSeqnum())] = getTime();
+    	p.setTimestamp(getTime());
+    	toLayer3(0, p);
+    }
+    
+    //the time an ack takes to come back for a packet sent now: srtt once measured, the rto until then
+    private double roundTrip() {
+    	return srtt < 0 ? rto : srtt;
+    }
+    
+    //A's receiver for B's data: buffers the packet in its slot and passes every in-order one up to layer 5;
+    //true if the packet was the next one and delivering it filled no gap
+    private boolean receiveAtA(Packet packet) {
+    	int seq = packet.getSeqnum();
+    	int distance = seqDistance(expectingA, seq);
+    	if((serial || (seq >= 0 && seq < LimitSeqNo)) && distance >= 0 && distance < WindowSize && !slotFullA[slot(seq)]) {
+    		receiverSlotsA[slot(seq)] = seq == expectingA ? packet : new Packet(packet);
+    		slotFullA[slot(seq)] = true;
+    	}
+    	int delivered = 0;
+    	while(slotFullA[slot(expectingA)]) {
+    		int k = slot(expectingA);
+    		deliver(A, receiverSlotsA[k]);
+    		layer5A++;
+    		receiverSlotsA[k] = null;
+    		slotFullA[k] = false;
+    		ackNoA = expectingA;
+    		expectingA = nextSeq(expectingA, 1);
+    		delivered++;
+    	}
+    	return distance == 0 && delivered == 1;
+    }
+    
+    //acks A's data: the ack rides on any data B can send now, and goes alone only if there is none
+    private void ackData() {
+    	ackPending = true;
+    	if(bidirectional && refillB() > 0)
+    		return;
+    	toLayer3(1, makeAck(lastSeq));
+    	ackB++;
+    	ackSent();
+    }
+    
+    //marks the seqs between the highest one B had received and seq (now buffered) as missing, NAKing them in NAK mode
+    private void detectGaps(int seq) {
+    	int seen = seqDistance(expecting, highestB) + 1;//seqs from expecting on that B already knew about
+    	if(seen < 0 || seen > WindowSize)
+    		seen = 0;
+    	int distance = seqDistance(expecting, seq);
+    	for(int i = seen; i < distance; i++) {
+    		int k = slot(nextSeq(expecting, i));
+    		if(!slotFull[k]) {
+    			holeSince[k] = getTime();
+    			if(nak)
+    				sendNak(nextSeq(expecting, i));
+    		}
+    	}
+    	if(distance >= seen)
+    		highestB = seq;
+    	//the oldest hole is still open: its NAK or the packet resent for it may have been lost
+    	if(nak && getTime() - nakTime[slot(expecting)] >= NAKSPACING * RxmtInterval)
+    		sendNak(expecting);
+    }
+    
+    private void sendNak(int s) {
+    	nakTime[slot(s)] = getTime();
+    	Packet p = new Packet(s, 0, 0);
+    	p.setChecksum(getChecksumEngine().compute(p) ^ NAKMARK);
+    	toLayer3(1, p);
+    	naksSent++;
+    }
+    
+    //B reports seq s missing: resend it now rather than at its timeout
+    private void resendNakked(int s) {
+    	if(ackedCount(s) == 0 || sacked[slot(s)])
+    		return;//acked since, or B has it after all
+    	int k = slot(s);
+    	congestionLoss(k, false);
+    	transmitA(windowSlots[k]);
+    	packetTime[k] = -1;
+    	armRetransmit(k);
+    	retransmission++;
+    	nakRetransmits++;
+    }
+    
+    //adds an original packet of A's to the current group, and sends the group's parity once it is full
+    private void addToParity(Packet p) {
+    	parityA = xorPayload(parityA, p);
+    	parityLengthA = Math.max(parityLengthA, p.getLength());
+    	parityBytesA = p.getData() != null;
+    	if(originalPackets % fecGroup != 0)
+    		return;
+    	Packet parity;
+    	if(parityBytesA) {
+    		byte[] data = new byte[parityLengthA];
+    		for(int i = 0; i < parityLengthA; i++)
+    			data[i] = (byte)parityA[i];
+    		parity = new Packet(parityPackets, 0, 0, data, parityLengthA);
+    	}
+    	else
+    		parity = new Packet(parityPackets, 0, 0, new String(parityA, 0, parityLengthA));
+    	parity.setChecksum(getChecksumEngine().compute(parity) ^ PARITYMARK);
+    	toLayer3(0, parity);
+    	parityPackets++;
+    	Arrays.fill(parityA, (char)0);
+    	parityLengthA = 0;
+    }
+    
+    //xors a payload into "parity", which grows if the payload is longer; returns the array
+    private static char[] xorPayload(char[] parity, Packet p) {
+    	int length = p.getLength();
+    	if(length > parity.length)
+    		parity = Arrays.copyOf(parity, length);
+    	byte[] data = p.getData();
+    	String payload = p.getPayload();
+    	for(int i = 0; i < length; i++)
+    		parity[i] ^= data != null ? (char)(data[i] & 0xFF) : payload.charAt(i);
+    	return parity;
+    }
+    
+    //a parity packet reached B: rebuild its group's missing packet if that is the only one
+    private void parityAtB(Packet p) {
+    	long first = receivedB / fecGroup;
+    	long g = first + (p.getSeqnum() - (int)first);//the seq field is the group number's low 32 bits
+    	if((g + 1) * fecGroup <= receivedB)
+    		return;//the whole group is in already
+    	int e = groupEntry(g);
+    	if(e < 0)
+    		return;
+    	addToEntry(e, p);
+    	groupParity[e] = true;
+    	if(rebuild(e))
+    		deliverInOrder();
+    }
+    
+    //counts a packet B stored into its group, which may then let the parity rebuild the group's last one
+    private void addToGroup(Packet p) {
+    	long n = receivedB + seqDistance(expecting, p.getSeqnum());
+    	int e = groupEntry(n / fecGroup);
+    	if(e < 0)
+    		return;
+    	addToEntry(e, p);
+    	groupCount[e]++;
+    	offsetSum[e] += (int)(n % fecGroup);
+    	rebuild(e);
+    }
+    
+    //entry of group g at B, taken over from an older group if need be; -1 if a newer group has it
+    private int groupEntry(long g) {
+    	int e = (int)(g % groupB.length);
+    	if(groupB[e] == g)
+    		return e;
+    	if(groupB[e] > g)
+    		return -1;
+    	groupB[e] = g;
+    	Arrays.fill(parityB[e], (char)0);
+    	groupLength[e] = 0;
+    	groupParity[e] = false;
+    	groupCount[e] = 0;
+    	offsetSum[e] = 0;
+    	return e;
+    }
+    
+    private void addToEntry(int e, Packet p) {
+    	parityB[e] = xorPayload(parityB[e], p);
+    	groupLength[e] = Math.max(groupLength[e], p.getLength());
+    	groupBytes[e] = p.getData() != null;
+    }
+    
+    //stores the missing packet of group entry e if B has the parity and all the others; true if it did
+    private boolean rebuild(int e) {
+    	if(!groupParity[e] || groupCount[e] != fecGroup - 1)
+    		return false;
+    	//offsets run from 0 to fecGroup - 1, so the missing one is what their sum lacks (int overflow cancels out)
+    	int offset = fecGroup * (fecGroup - 1) / 2 - offsetSum[e];
+    	long n = groupB[e] * fecGroup + offset;
+    	int seq = nextSeq(expecting, (int)(n - receivedB));
+    	if(n < receivedB || !inWindow(seq) || seqDistance(expecting, seq) >= WindowSize - unread.size() || slotFull[slot(seq)])
+    		return false;
+    	int length = groupLength[e];
+    	Packet p;
+    	if(groupBytes[e]) {
+    		byte[] data = new byte[length];
+    		for(int i = 0; i < length; i++)
+    			data[i] = (byte)parityB[e][i];
+    		p = new Packet(seq, 0, 0, data, length);
+    	}
+    	else {
+    		while(length > 0 && parityB[e][length - 1] == 0)
+    			length--;//the padding of a shorter packet: payloads never hold a NUL
+    		p = new Packet(seq, 0, 0, new String(parityB[e], 0, length));
+    	}
+    	p.setChecksum(getChecksumEngine().compute(p));
+    	fecRecovered++;
+    	store(p);
+    	return true;
+    }
+    
+    //B's ack just went out, alone or on data: nothing is left to delay
+    private void ackSent() {
+    	ackPending = false;
+    	unackedB = 0;
+    	if(ackEvery > 1)
+    		stopTimer(ackTimer);
+    }
+    
+    //numbers a new data packet of B's and sends it, or buffers it while B's window is full
+    private void sendDataB(Packet newPack) {
+    	senderBufferB.add(newPack);
+    	seqNoB = nextSeq(seqNoB, 1);
+    	refillB();
+    }
+    
+    //moves buffered packets of B's into its window and sends them; returns how many
+    private int refillB() {
+    	int sent = 0;
+    	while(windowCountB < WindowSize && !senderBufferB.isEmpty()) {
+    		Packet newpck = senderBufferB.poll();
+    		int k = slot(newpck.getSeqnum());
+    		windowSlotsB[k] = newpck;
+    		windowCountB++;
+    		transmitB(newpck);
+    		backoffB[k] = 1;
+    		armRetransmitB(k);
+    		originalPacketsB++;
+    		sent++;
+    	}
+    	return sent;
+    }
+    
+    //sends a data packet of B's, with the latest ack for A's data on it
+    private void transmitB(Packet p) {
+    	p.setAcknum(lastSeq);
+    	p.setTimestamp(echoB);
+    	if(flowControl)
+    		p.setWindow(advertise());
+    	p.setChecksum(getChecksumEngine().compute(p));
+    	toLayer3(1, p);
+    	if(ackPending)
+    		piggybackedAcks++;
+    	ackSent();
+    }
+    
+    //slides B's window past a cumulative ack for seq a from A
+    private void ackedAtB(int a) {
+    	if(!serial && (a < 0 || a >= LimitSeqNo))
+    		return;
+    	int distance = seqDistance(windowBaseB, a);
+    	if(distance < 0 || distance >= windowCountB)
+    		return;
+    	for(int i = 0; i <= distance; i++) {
+    		int k = slot(windowBaseB);
+    		releasePayload(windowSlotsB[k].getData());
+    		windowSlotsB[k] = null;
+    		rxmtWheelB.cancel(k);
+    		windowBaseB = nextSeq(windowBaseB, 1);
+    	}
+    	windowCountB -= distance + 1;
+    	if(windowCountB == 0)
+    		stopTimer(rxmtTimerB);
+    }
+    
+    //resends B's packets whose deadline has passed
+    private void rxmtTimeoutB() {
+    	int count = rxmtWheelB.advance(getTime(), expiredB);
+    	for(int i = 0; i < count; i++) {
+    		int k = expiredB[i];
+    		transmitB(windowSlotsB[k]);
+    		backoffB[k] = Math.min(backoffB[k] * 2, MAXRTOFACTOR);
+    		armRetransmitB(k);
+    		retransmissionB++;
+    	}
+    	if(!rxmtWheelB.isEmpty())
+    		restartTimer(rxmtTimerB, rxmtWheelB.nextDeadline() - getTime());
+    }
+    
+    //gives B's packet in slot k a fresh retransmission deadline
+    private void armRetransmitB(int k) {
+    	double timeout = Math.min(rto * backoffB[k], MAXRTOFACTOR * RxmtInterval);
+    	if(rxmtWheelB.schedule(k, getTime() + timeout, getTime()))
+    		restartTimer(rxmtTimerB, rxmtWheelB.nextDeadline() - getTime());
+    }
+    
     // This routine will be called once, before any of your other B-side 
     // routines are called. It can be used to do any required
     // initialization (e.g. of member variables you add to control the state
     // of entity B).
     protected void bInit()
     {
-    	//receiverBuffer = new PriorityQueue<Packet>(new seqComparator());
-    	receiverBuffer = new LinkedList<Packet>();
-    	expecting = 0;
-    	lastSeq = -1;
+    	initSlots();
+    	receiverSlots = new Packet[slots];
+    	slotFull = new boolean[slots];
+    	expecting = FirstSeqNo;
+    	lastSeq = FirstSeqNo - 1;
+    	echoB = 0;
+    	highestB = lastSeq;
+    	nakTime = new double[slots];
+    	Arrays.fill(nakTime, Double.NEGATIVE_INFINITY);
+    	holeSince = new double[slots];
+    	Arrays.fill(holeSince, -1);
+    	naksSent = 0;
+    	fecRecovered = 0;
+    	receivedB = 0;
+    	if(fecGroup > 0) {
+    		int groups = slots / fecGroup + 2;//more than a window spans
+    		groupB = new long[groups];
+    		Arrays.fill(groupB, -1);
+    		parityB = new char[groups][MAXDATASIZE];
+    		groupLength = new int[groups];
+    		groupBytes = new boolean[groups];
+    		groupParity = new boolean[groups];
+    		groupCount = new int[groups];
+    		offsetSum = new int[groups];
+    	}
+    	gapsRepaired = 0;
+    	gapRepairTime = 0;
     	layer5B = 0;
     	ackB = 0;
+    	duplicatesB = 0;
+    	unread = new ArrayDeque<Packet>();
+    	readTimer = getTimer(1, READTIMER);
+    	advertised = WindowSize;
+    	receiverDrops = 0;
+    	maxUnread = 0;
+    	reassembly = new StringBuilder();
+    	seqNoB = FirstSeqNo;
+    	senderBufferB = new ArrayDeque<Packet>();
+    	windowSlotsB = new Packet[slots];
+    	windowBaseB = FirstSeqNo;
+    	windowCountB = 0;
+    	rxmtTimerB = getTimer(1, RXMTTIMERB);
+    	rxmtWheelB = new TimingWheel(slots, WHEELSLOTS, RxmtInterval / TICKSPERRXMT);
+    	expiredB = new int[slots];
+    	backoffB = new int[slots];
+    	ackTimer = getTimer(1, ACKTIMER);
+    	unackedB = 0;
+    	ackPending = false;
+    	outOfOrder = 0;
+    	coalescedAcks = 0;
+    	ackTimeouts = 0;
+    	messagesB = 0;
+    	originalPacketsB = 0;
+    	retransmissionB = 0;
+    }
+    
+    // B's layer 5 reads the next message
+    protected void bTimerInterrupt(int timerId)
+    {
+    	if(timerId == RXMTTIMERB) {
+    		rxmtTimeoutB();
+    		return;
+    	}
+    	//the ack B held back is due
+    	if(timerId == ACKTIMER) {
+    		ackTimeouts++;
+    		ackData();
+    		return;
+    	}
+    	deliver(B, unread.poll());
+    	layer5B++;
+    	if(!unread.isEmpty())
+    		restartTimer(readTimer, readInterval);
+    	//a zero window just reopened: tell A rather than wait for its probe
+    	if(flowControl && advertised == 0)
+    		ackData();
     }
     
     // Use to print final statistics
     protected void Simulation_done()
     {
     	// TO PRINT THE STATISTICS, FILL IN THE DETAILS BY PUTTING VARIBALE NAMES. DO NOT CHANGE THE FORMAT OF PRINTED OUTPUT
-    	System.out.println("\n\n===============STATISTICS=======================");
-    	System.out.println("Number of original packets transmitted by A:" + originalPackets);
-    	System.out.println("Number of retransmissions by A:" + retransmission);
-    	System.out.println("Number of data packets delivered to layer 5 at B:" + layer5B);
-    	System.out.println("Number of ACK packets sent by B:" + ackB);
-    	System.out.println("Number of corrupted packets:" + corruptedPackets);
-    	System.out.println("Ratio of lost packets:" + (double)(retransmission-corruptedPackets) / (double)(originalPackets+retransmission+ackB));
-    	System.out.println("Ratio of corrupted packets:" + (double)((double)corruptedPackets / (originalPackets + corruptedPackets + ackB)));
-    	System.out.println("Average RTT:" + RTT / RTTCount);
-    	System.out.println("Average communication time:" + totalCommuTime / originalPackets);
-    	System.out.println("==================================================");
+    	out.println("\n\n===============STATISTICS=======================");
+    	out.println("Number of original packets transmitted by A:" + originalPackets);
+    	out.println("Number of retransmissions by A:" + retransmission);
+    	out.println("Number of data packets delivered to layer 5 at B:" + layer5B);
+    	out.println("Number of ACK packets sent by B:" + ackB);
+    	out.println("Number of corrupted packets:" + corruptedPackets);
+    	out.println("Ratio of lost packets:" + (double)(retransmission-corruptedPackets) / (double)(originalPackets+retransmission+ackB));
+    	out.println("Ratio of corrupted packets:" + (double)((double)corruptedPackets / (originalPackets + corruptedPackets + ackB)));
+    	out.println("Average RTT:" + RTT / RTTCount);
+    	out.println("Average communication time:" + totalCommuTime / originalPackets);
+    	out.println("==================================================");
 
     	// PRINT YOUR OWN STATISTIC HERE TO CHECK THE CORRECTNESS OF YOUR PROGRAM
-    	System.out.println("\nEXTRA:");
+    	out.println("\nEXTRA:");
+    	out.println("Checksum:" + getChecksumEngine().getName());
+    	out.println("Fast retransmit:" + (fastRetransmit ? "after " + dupAckThreshold + " duplicate ACKs" : "off") + " Fast retransmits:" + fastRetransmits);
+    	out.println("Throughput (packets delivered per time unit):" + layer5B / getTime());
+    	out.println("Fragmentation:" + (fragmentation ? "on" : "off") + " Messages sent by A:" + messagesA + " Fragments sent by A:" + fragmentsA);
+    	out.println("Messages delivered to layer 5 at B:" + messagesDelivered[B] + " Message goodput (messages per time unit):" + messagesDelivered[B] / getTime() + " (chars per time unit):" + messageChars[B] / getTime());
+    	out.println("Bidirectional:" + (bidirectional ? "on" : "off") + " Messages sent by B:" + messagesB + " Original packets by B:" + originalPacketsB + " Retransmissions by B:" + retransmissionB);
+    	out.println("Data packets delivered to layer 5 at A:" + layer5A + " Messages delivered to layer 5 at A:" + messagesDelivered[A] + " ACK packets sent by A:" + ackA + " Piggybacked ACKs:" + piggybackedAcks);
+    	out.println("Delayed ACKs:" + (ackEvery > 1 ? "every " + ackEvery + " packets or after " + ackDelay : "off") + " Coalesced:" + coalescedAcks + " Sent by the ACK timer:" + ackTimeouts);
+    	out.println("NAK:" + (nak ? "on" : "off") + " NAKs sent by B:" + naksSent + " Retransmissions on NAK:" + nakRetransmits + " Gaps repaired at B:" + gapsRepaired + " Average gap repair time:" + gapRepairTime / gapsRepaired);
+    	out.println("FEC:" + (fecGroup > 0 ? "one parity packet per " + fecGroup + " data packets" : "off") + " Parity packets sent by A:" + parityPackets + " Packets recovered by FEC at B:" + fecRecovered + " Bandwidth overhead:" + (double)parityPackets / (originalPackets + retransmission));
+    	out.println("Packets sent into the channel:" + (originalPackets + retransmission + parityPackets + ackB + naksSent + originalPacketsB + retransmissionB + ackA));
+    	out.println("Send buffer:" + (sendBufferSize > 0 ? sendBufferSize + " packets, " + POLICYNAMES[bufferPolicy] : "unbounded") + " Max depth:" + (int)queueDepth.getMax() + " Average depth:" + queueDepth.mean(getTime()) + " Average queueing delay:" + queueingTime / bufferedPackets);
+    	out.println("Messages dropped by A (new):" + tailDrops + " (buffered):" + headDrops + " Messages deferred at A's layer 5:" + getDeferrals(A) + " Time deferred:" + getDeferredTime(A));
+    	out.println("Flow control:" + (flowControl ? "on" : "off") + " Zero windows:" + zeroWindows + " Window probes:" + windowProbes);
+    	out.println("Sequence numbers:" + (serial ? "32-bit serial" : "modulo " + LimitSeqNo) + " Per-packet slots:" + slots);
+    	out.println("B read interval:" + readInterval + " Max unread at B:" + maxUnread + " Dropped at B for lack of room:" + receiverDrops);
+    	out.println("SACK:" + (sack ? "on" : "off") + " SACKed packets:" + sackedPackets + " Duplicate data packets at B:" + duplicatesB);
+    	out.println("Final SRTT:" + srtt + " RTTVAR:" + rttvar + " RTO:" + rto);
+    	out.println("Min RTO:" + rtoTrajectory.getMin() + " Max RTO:" + rtoTrajectory.getMax() + " Timeout backoffs:" + backoffs + " RTO updates:" + rtoTrajectory.size());
+    	//rto in effect at evenly spaced times over the run
+    	out.println("RTO over time (time:RTO):" + rtoTrajectory.sample(getTime(), TRAJECTORYPOINTS));
+    	if(!congestionControl) {
+    		out.println("Congestion control:off");
+    	}
+    	else {
+    		out.println("Congestion control:on Window decreases:" + cwndDecreases + " Final cwnd:" + cwnd + " ssthresh:" + ssthresh);
+    		out.println("Min cwnd:" + cwndTrajectory.getMin() + " Max cwnd:" + cwndTrajectory.getMax());
+    		out.println("Congestion window over time (time:cwnd):" + cwndTrajectory.sample(getTime(), TRAJECTORYPOINTS));
+    	}
     	// EXAMPLE GIVEN BELOW
-    	//System.out.println("Example statistic you want to check e.g. number of ACK packets received by A :" + "<YourVariableHere>"); 
+    	//out.println("Example statistic you want to check e.g. number of ACK packets received by A :" + "<YourVariableHere>"); 
     }	
+    
+    // The numbers Simulation_done() prints, by name; every run has the same names, whatever is turned on
+    public Map<String, Number> getStatistics()
+    {
+    	Map<String, Number> stats = super.getStatistics();
+    	//the standard block
+    	stats.put("originalPackets", originalPackets);
+    	stats.put("retransmissions", retransmission);
+    	stats.put("deliveredB", layer5B);
+    	stats.put("acksB", ackB);
+    	stats.put("corruptedPackets", corruptedPackets);
+    	stats.put("lostRatio", (double)(retransmission-corruptedPackets) / (double)(originalPackets+retransmission+ackB));
+    	stats.put("corruptedRatio", (double)corruptedPackets / (originalPackets + corruptedPackets + ackB));
+    	stats.put("averageRtt", RTT / RTTCount);
+    	stats.put("averageCommunicationTime", totalCommuTime / originalPackets);
+    	//the extras
+    	stats.put("fastRetransmits", fastRetransmits);
+    	stats.put("throughput", layer5B / getTime());
+    	stats.put("messagesA", messagesA);
+    	stats.put("fragmentsA", fragmentsA);
+    	stats.put("messagesDeliveredB", messagesDelivered[B]);
+    	stats.put("messageGoodput", messagesDelivered[B] / getTime());
+    	stats.put("charGoodput", messageChars[B] / getTime());
+    	stats.put("messagesB", messagesB);
+    	stats.put("originalPacketsB", originalPacketsB);
+    	stats.put("retransmissionsB", retransmissionB);
+    	stats.put("deliveredA", layer5A);
+    	stats.put("messagesDeliveredA", messagesDelivered[A]);
+    	stats.put("acksA", ackA);
+    	stats.put("piggybackedAcks", piggybackedAcks);
+    	stats.put("coalescedAcks", coalescedAcks);
+    	stats.put("ackTimeouts", ackTimeouts);
+    	stats.put("naksSent", naksSent);
+    	stats.put("nakRetransmits", nakRetransmits);
+    	stats.put("gapsRepaired", gapsRepaired);
+    	stats.put("averageGapRepairTime", gapRepairTime / gapsRepaired);
+    	stats.put("parityPackets", parityPackets);
+    	stats.put("fecRecovered", fecRecovered);
+    	stats.put("fecOverhead", (double)parityPackets / (originalPackets + retransmission));
+    	stats.put("channelPackets", originalPackets + retransmission + parityPackets + ackB + naksSent + originalPacketsB + retransmissionB + ackA);
+    	stats.put("maxQueueDepth", (int)queueDepth.getMax());
+    	stats.put("averageQueueDepth", queueDepth.mean(getTime()));
+    	stats.put("averageQueueingDelay", queueingTime / bufferedPackets);
+    	stats.put("tailDrops", tailDrops);
+    	stats.put("headDrops", headDrops);
+    	stats.put("zeroWindows", zeroWindows);
+    	stats.put("windowProbes", windowProbes);
+    	stats.put("maxUnread", maxUnread);
+    	stats.put("receiverDrops", receiverDrops);
+    	stats.put("sackedPackets", sackedPackets);
+    	stats.put("duplicatesB", duplicatesB);
+    	stats.put("srtt", srtt);
+    	stats.put("rttvar", rttvar);
+    	stats.put("rto", rto);
+    	stats.put("minRto", rtoTrajectory.getMin());
+    	stats.put("maxRto", rtoTrajectory.getMax());
+    	stats.put("backoffs", backoffs);
+    	stats.put("rtoUpdates", rtoTrajectory.size());
+    	stats.put("cwndDecreases", cwndDecreases);
+    	stats.put("cwnd", cwnd);
+    	stats.put("ssthresh", ssthresh);
+    	stats.put("minCwnd", cwndTrajectory.getMin());
+    	stats.put("maxCwnd", cwndTrajectory.getMax());
+    	return stats;
+    }
 
 }
@@ -0,0 +1,342 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Sweep
+{
+    // Command line front end of the simulator:
+    //
+    //    java Project --loss 0.1,0.2,0.3 --window 8,16 --seed 1,2,3,4,5
+    //
+    // Every setting (see SimulatorSettings) is a flag, and a flag given a
+    // comma separated list of values, or several times, makes a sweep over
+    // the Cartesian product of all such lists.  "--sweep file" reads flags
+    // from a file, one "name value[,value...]" per line ('#' starts a
+    // comment).  The runs go to a fixed pool of "--threads" threads (all
+    // cores by default), each simulator printing nothing and writing no
+    // layer 5 files, and every run becomes one row of
+    // "--format" csv (the default) or json (one object per line) in
+    // "--results" (standard output by default).  A row holds the settings
+    // and the run's getStatistics(), whose names are the same for every
+    // run, so the rows line up under one header.
+    //
+    // A single run without --format or --results is simply run as Project
+    // would run it, printing to standard output and writing OutputFile.
+
+    public final static void main(String[] argv)
+    {
+        Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String format = null;
+        String results = null;
+
+        try
+        {
+            for (int i = 0; i < argv.length; i++)
+            {
+                String flag = argv[i];
+                if (flag.equals("--help") || flag.equals("-h"))
+                {
+                    usage(System.out);
+                    return;
+                }
+                if (!flag.startsWith("--") || (i + 1 == argv.length))
+                {
+                    throw new IllegalArgumentException("expected --name value at " + flag);
+                }
+                String name = flag.substring(2);
+                String value = argv[++i];
+
+                if (name.equals("threads"))
+                {
+                    threads = Integer.parseInt(value);
+                }
+                else if (name.equals("format"))
+                {
+                    format = value;
+                }
+                else if (name.equals("results"))
+                {
+                    results = value;
+                }
+                else if (name.equals("sweep"))
+                {
+                    readSweepFile(value, values);
+                }
+                else
+                {
+                    addValues(name, value, values);
+                }
+            }
+            if ((format != null) && !format.equals("csv") && !format.equals("json"))
+            {
+                throw new IllegalArgumentException("format: csv or json, not " + format);
+            }
+            if (threads < 1)
+            {
+                throw new IllegalArgumentException("threads: must be > 0");
+            }
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            usage(System.err);
+            System.exit(1);
+        }
+
+        List<SimulatorSettings> runs = combinations(values);
+        if ((runs.size() == 1) && (format == null) && (results == null))
+        {
+            runs.get(0).newSimulator().runSimulator();
+            return;
+        }
+
+        try
+        {
+            PrintStream out = (results == null) ? System.out :
+                new PrintStream(new BufferedOutputStream(new FileOutputStream(results)));
+            int failed = run(runs, threads, "json".equals(format), out);
+            out.flush();
+            if (out != System.out)
+            {
+                out.close();
+            }
+            if (failed > 0)
+            {
+                System.err.println(failed + " of " + runs.size() + " runs failed");
+                System.exit(1);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Runs every configuration on "threads" threads and writes their rows
+    // in order; returns the number of runs that failed
+    public static int run(List<SimulatorSettings> runs, int threads,
+                          boolean json, PrintStream out)
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Map<String, String>>> rows = new ArrayList<Future<Map<String, String>>>();
+        for (SimulatorSettings s : runs)
+        {
+            rows.add(pool.submit(() -> runOne(s)));
+        }
+        pool.shutdown();
+
+        int failed = 0;
+        boolean header = !json;
+        for (int i = 0; i < rows.size(); i++)
+        {
+            Map<String, String> row;
+            try
+            {
+                row = rows.get(i).get();
+            }
+            catch (Exception e)
+            {
+                Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+                System.err.println("run " + (i + 1) + " failed: " + cause);
+                failed++;
+                continue;
+            }
+
+            if (json)
+            {
+                out.println(toJson(row));
+            }
+            else
+            {
+                if (header)
+                {
+                    out.println(toCsv(new ArrayList<String>(row.keySet())));
+                    header = false;
+                }
+                out.println(toCsv(new ArrayList<String>(row.values())));
+            }
+        }
+        return failed;
+    }
+
+    // One run, printing nothing: its settings followed by its statistics
+    public static Map<String, String> runOne(SimulatorSettings s)
+    {
+        StudentNetworkSimulator simulator = s.newSimulator();
+        simulator.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+        simulator.setLayer5Files(null, null);
+        simulator.runSimulator();
+
+        Map<String, String> row = new LinkedHashMap<String, String>();
+        for (String name : SimulatorSettings.getNames())
+        {
+            row.put(name, s.getText(name));
+        }
+        for (Map.Entry<String, Number> e : simulator.getStatistics().entrySet())
+        {
+            row.put(e.getKey(), e.getValue().toString());
+        }
+        return row;
+    }
+
+    // The Cartesian product of the values given for each setting
+    public static List<SimulatorSettings> combinations(Map<String, List<String>> values)
+    {
+        List<SimulatorSettings> runs = new ArrayList<SimulatorSettings>();
+        runs.add(new SimulatorSettings());
+        for (Map.Entry<String, List<String>> e : values.entrySet())
+        {
+            List<SimulatorSettings> next = new ArrayList<SimulatorSettings>();
+            for (SimulatorSettings s : runs)
+            {
+                for (String v : e.getValue())
+                {
+                    SimulatorSettings t = new SimulatorSettings(s);
+                    t.set(e.getKey(), v);
+                    next.add(t);
+                }
+            }
+            runs = next;
+        }
+        return runs;
+    }
+
+    private static void addValues(String name, String list,
+                                  Map<String, List<String>> values)
+    {
+        if (!SimulatorSettings.isSetting(name))
+        {
+            throw new IllegalArgumentException("no such setting: " + name);
+        }
+        List<String> v = values.get(name);
+        if (v == null)
+        {
+            v = new ArrayList<String>();
+            values.put(name, v);
+        }
+        for (String value : list.split(","))
+        {
+            // checked now, so that a typo fails before any run starts
+            new SimulatorSettings().set(name, value);
+            v.add(value.trim());
+        }
+    }
+
+    private static void readSweepFile(String path,
+                                      Map<String, List<String>> values)
+        throws IOException
+    {
+        BufferedReader in = new BufferedReader(new FileReader(path));
+        try
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                int comment = line.indexOf('#');
+                if (comment >= 0)
+                {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.isEmpty())
+                {
+                    continue;
+                }
+                String[] words = line.split("[\\s=]+", 2);
+                if (words.length < 2)
+                {
+                    throw new IllegalArgumentException(path + ": no value in: " + line);
+                }
+                addValues(words[0].startsWith("--") ? words[0].substring(2) : words[0],
+                          words[1].replaceAll("\\s", ""), values);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static String toCsv(List<String> fields)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String f : fields)
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(',');
+            }
+            if ((f.indexOf(',') >= 0) || (f.indexOf('"') >= 0))
+            {
+                sb.append('"').append(f.replace("\"", "\"\"")).append('"');
+            }
+            else
+            {
+                sb.append(f);
+            }
+        }
+        return sb.toString();
+    }
+
+    // Numbers are written as numbers, NaN and infinities as null
+    private static String toJson(Map<String, String> row)
+    {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, String> e : row.entrySet())
+        {
+            if (sb.length() > 1)
+            {
+                sb.append(',');
+            }
+            sb.append(quote(e.getKey())).append(':');
+            String v = e.getValue();
+            try
+            {
+                double d = Double.parseDouble(v);
+                sb.append(Double.isFinite(d) ? v : "null");
+            }
+            catch (NumberFormatException nfe)
+            {
+                sb.append(quote(v));
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String quote(String s)
+    {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if ((c == '"') || (c == '\\'))
+            {
+                sb.append('\\').append(c);
+            }
+            else if (c < ' ')
+            {
+                sb.append(String.format("\\u%04x", (int)c));
+            }
+            else
+            {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void usage(PrintStream out)
+    {
+        out.println("usage: java Project [--name value[,value...]]... [--sweep file]");
+        out.println("                    [--threads n] [--format csv|json] [--results file]");
+        out.println("Without arguments the settings are prompted for.  Settings:");
+        out.print(SimulatorSettings.usage());
+    }
+}
@@ -0,0 +1,58 @@
+public class TimerHandle
+{
+    // A timer is keyed by (entity, timerId).  The handle remembers the one
+    // TIMERINTERRUPT event that is currently live for it; cancelling just
+    // forgets that event, and the simulator discards stale timer events
+    // when they reach the front of the event list.
+    private int entity;
+    private int timerId;
+    private Event pending;
+
+    public TimerHandle(int ent, int id)
+    {
+        entity = ent;
+        timerId = id;
+        pending = null;
+    }
+
+    public int getEntity()
+    {
+        return entity;
+    }
+
+    public int getTimerId()
+    {
+        return timerId;
+    }
+
+    public boolean isRunning()
+    {
+        return pending != null;
+    }
+
+    public double getExpiry()
+    {
+        if (pending == null)
+        {
+            return -1;
+        }
+
+        return pending.getTime();
+    }
+
+    boolean isPending(Event e)
+    {
+        return (pending != null) && (pending == e);
+    }
+
+    void setPending(Event e)
+    {
+        pending = e;
+    }
+
+    public String toString()
+    {
+        return("entity: " + entity + "  timerId: " + timerId +
+               "  expiry: " + getExpiry());
+    }
+}
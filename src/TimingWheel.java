@@ -0,0 +1,207 @@
+import java.util.Arrays;
+
+public class TimingWheel
+{
+    // Hashed timing wheel (Varghese and Lauck) over a fixed range of ids,
+    // e.g. one id per sequence number.  Time moves forward in ticks of a
+    // fixed width; a deadline is hashed to the slot of the tick it falls
+    // in, so a deadline more than one turn of the wheel away shares its
+    // slot with nearer ones and simply stays put until its own turn comes.
+    // Ids are linked into their slot through arrays, so schedule() and
+    // cancel() are O(1) and nothing is allocated after construction.
+    //
+    // The wheel has no clock of its own.  The owner keeps one timer armed
+    // for nextDeadline() and calls advance() with the current time when it
+    // goes off, so it only wakes up when something is due, not on every
+    // tick.  A deadline fires on the first tick at or after it, i.e. up to
+    // one tick late.
+    private static final int NONE = -1;
+
+    private double tick;
+    private int[] head;
+    private int[] next;
+    private int[] prev;
+    private int[] slotOf;
+    private long[] dueTick;
+    private long currentTick;
+    private double currentTime;
+    private long earliest;//no id is due before this tick
+    private int size;
+
+    public TimingWheel(int ids, int slots, double tickWidth)
+    {
+        tick = tickWidth;
+        head = new int[slots];
+        next = new int[ids];
+        prev = new int[ids];
+        slotOf = new int[ids];
+        dueTick = new long[ids];
+        Arrays.fill(head, NONE);
+        Arrays.fill(slotOf, NONE);
+        currentTick = 0;
+        currentTime = 0;
+        earliest = Long.MAX_VALUE;
+        size = 0;
+    }
+
+    // Sets (or moves) the deadline of id.  Returns true if it is now the
+    // earliest one, in which case the owner has to re-arm its timer for
+    // nextDeadline().  An empty wheel restarts its ticks from now.
+    public boolean schedule(int id, double deadline, double now)
+    {
+        if (size == 0)
+        {
+            currentTime = now;
+            earliest = Long.MAX_VALUE;
+        }
+        else
+        {
+            unlink(id);
+        }
+
+        long ticks = (long)Math.ceil((deadline - currentTime) / tick);
+        if (ticks < 1)
+        {
+            ticks = 1;
+        }
+        dueTick[id] = currentTick + ticks;
+
+        int slot = (int)(dueTick[id] % head.length);
+        slotOf[id] = slot;
+        prev[id] = NONE;
+        next[id] = head[slot];
+        if (head[slot] != NONE)
+        {
+            prev[head[slot]] = id;
+        }
+        head[slot] = id;
+        size++;
+
+        if (dueTick[id] < earliest)
+        {
+            earliest = dueTick[id];
+            return true;
+        }
+        return false;
+    }
+
+    public boolean cancel(int id)
+    {
+        return unlink(id);
+    }
+
+    // Moves to now, removes the ids due by then and puts them in expired;
+    // returns how many there were.  A timer armed for a deadline that was
+    // cancelled since finds none; the owner just re-arms it.
+    public int advance(double now, int[] expired)
+    {
+        int count = 0;
+        while (size > 0)
+        {
+            long due = nextTick();
+            // ticks are a whole tick apart, so half a tick absorbs rounding
+            if ((due - currentTick) * tick > now - currentTime + tick / 2)
+            {
+                break;
+            }
+            currentTime += (due - currentTick) * tick;
+            currentTick = due;
+
+            int id = head[(int)(due % head.length)];
+            while (id != NONE)
+            {
+                int following = next[id];
+                if (dueTick[id] <= due)
+                {
+                    unlink(id);
+                    expired[count++] = id;
+                }
+                id = following;
+            }
+        }
+
+        return count;
+    }
+
+    // When the earliest id is due; the wheel must not be empty
+    public double nextDeadline()
+    {
+        return currentTime + (nextTick() - currentTick) * tick;
+    }
+
+    // The earliest tick any id is due on, also remembered in earliest.
+    // Usually one turn of the slots ahead finds it; ids further out than
+    // that are all looked at.
+    private long nextTick()
+    {
+        for (long t = Math.max(earliest, currentTick + 1);
+             t <= currentTick + head.length; t++)
+        {
+            for (int id = head[(int)(t % head.length)]; id != NONE; id = next[id])
+            {
+                if (dueTick[id] == t)
+                {
+                    earliest = t;
+                    return t;
+                }
+            }
+        }
+
+        long min = Long.MAX_VALUE;
+        for (int slot = 0; slot < head.length; slot++)
+        {
+            for (int id = head[slot]; id != NONE; id = next[id])
+            {
+                min = Math.min(min, dueTick[id]);
+            }
+        }
+        earliest = min;
+        return min;
+    }
+
+    public boolean isScheduled(int id)
+    {
+        return slotOf[id] != NONE;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public double getTick()
+    {
+        return tick;
+    }
+
+    private boolean unlink(int id)
+    {
+        int slot = slotOf[id];
+        if (slot == NONE)
+        {
+            return false;
+        }
+
+        if (prev[id] != NONE)
+        {
+            next[prev[id]] = next[id];
+        }
+        else
+        {
+            head[slot] = next[id];
+        }
+        if (next[id] != NONE)
+        {
+            prev[next[id]] = prev[id];
+        }
+
+        slotOf[id] = NONE;
+        size--;
+        return true;
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+public class Trajectory
+{
+    // A value over simulated time, e.g. the retransmission timeout, kept as
+    // the list of its changes.  Recording a value that did not change, or
+    // a second change at the same time, stores nothing new.  At most
+    // CAPACITY changes are kept: once that many are stored, time is cut
+    // into buckets of equal width, only the last change in each bucket is
+    // kept, and the width doubles whenever the buckets fill up again.  So
+    // sample() is exact to within a bucket, a small fraction of the run,
+    // while the minimum, the maximum, mean() and size() stay exact.
+    // Appending is amortised O(1) and allocates only while the arrays grow
+    // up to CAPACITY.
+    private static final int CAPACITY = 1024;
+
+    private double[] times;
+    private double[] values;
+    private int size;
+    private double width;//bucket width, 0 while every change is kept
+    private int updates;
+    private double min;
+    private double max;
+
+    // For mean(): the first and the latest change, and the area under the
+    // value from the one to the other
+    private double firstTime;
+    private double firstValue;
+    private double lastTime;
+    private double lastValue;
+    private double area;
+
+    public Trajectory()
+    {
+        times = new double[64];
+        values = new double[64];
+        size = 0;
+        width = 0;
+        updates = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        area = 0;
+    }
+
+    // Records that the value became v at time t; times must not decrease
+    public void add(double t, double v)
+    {
+        updates++;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+        if (updates == 1)
+        {
+            firstTime = t;
+            firstValue = v;
+        }
+        else if (v == lastValue)
+        {
+            return;
+        }
+        else
+        {
+            area += lastValue * (t - lastTime);
+        }
+        lastTime = t;
+        lastValue = v;
+
+        if (size == times.length)
+        {
+            if (size < CAPACITY)
+            {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            else
+            {
+                thin();
+            }
+        }
+        // a later change in the same bucket replaces the one kept there
+        if ((size > 0) && ((t == times[size - 1]) ||
+                           ((width > 0) && (bucket(t) == bucket(times[size - 1])))))
+        {
+            size--;
+        }
+        times[size] = t;
+        values[size] = v;
+        size++;
+    }
+
+    // Widens the buckets, to half as many as CAPACITY the first time and
+    // twice the width after that, keeping the last change in each
+    private void thin()
+    {
+        width = (width == 0) ? (times[size - 1] - firstTime) / (CAPACITY / 2)
+                             : width * 2;
+        int kept = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if ((i + 1 == size) || (bucket(times[i]) != bucket(times[i + 1])))
+            {
+                times[kept] = times[i];
+                values[kept] = values[i];
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    private long bucket(double t)
+    {
+        return (long)Math.floor((t - firstTime) / width);
+    }
+
+    // The value in effect at "points" evenly spaced times up to "end", as
+    // " time:value" pairs
+    public String sample(double end, int points)
+    {
+        StringBuilder sb = new StringBuilder();
+        int change = 0;
+        for (int i = 1; i <= points; i++)
+        {
+            double t = end * i / points;
+            while (change + 1 < size && times[change + 1] <= t)
+            {
+                change++;
+            }
+            sb.append(String.format(" %.1f:%.2f", t,
+                                    (size == 0) ? 0.0 : values[change]));
+        }
+        return sb.toString();
+    }
+
+    // Mean of the value over time, from its first change up to "end"
+    public double mean(double end)
+    {
+        if (updates == 0)
+        {
+            return 0.0;
+        }
+        if (end <= firstTime)
+        {
+            return firstValue;
+        }
+
+        return (area + lastValue * (end - lastTime)) / (end - firstTime);
+    }
+
+    // Number of values recorded, changed or not
+    public int size()
+    {
+        return updates;
+    }
+
+    public double getMin()
+    {
+        return min;
+    }
+
+    public double getMax()
+    {
+        return max;
+    }
+}